@@ -0,0 +1,37 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+
+// A complete upstream response. Fresh for freshNanos after it was stored, then served stale for up to staleNanos,
+// while one request revalidates it.
+record CachedResponse(int status,
+                      HttpHeaders headers,
+                      byte[] body,
+                      long storedAt,
+                      long freshNanos,
+                      long staleNanos) {
+
+    boolean isFresh() {
+        return System.nanoTime() - storedAt < freshNanos;
+    }
+
+    long ageSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - storedAt);
+    }
+
+    String eTag() {
+        return headers.getETag();
+    }
+
+    // The upstream confirmed (304) that our copy is still current
+    CachedResponse revalidated(long freshNanos, long staleNanos) {
+        return new CachedResponse(status, headers, body, System.nanoTime(), freshNanos, staleNanos);
+    }
+
+    // body and a rough allowance for the headers
+    int weight() {
+        return body.length + 512;
+    }
+}
@@ -0,0 +1,189 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Merges identical GET/HEAD requests, which are in flight at the same time, into one upstream call.
+// The first request (leader) goes upstream, the others (followers) wait for its response and get a copy of it.
+// If the leader fails, is cancelled or its response can't be shared, the followers go upstream by themselves.
+// Only the headers of the upstream response are shared: the filters before this one (e.g. the X-RateLimit-* of the
+// RequestRateLimiter) already wrote their own headers for each caller, a follower keeps those.
+//
+// Key: method, path, the sorted query parameters, Accept, the conditional headers, the configured vary headers and
+// the authorities of the caller. The authorities keep a response, which depends on @PreAuthorize, away from callers
+// with other rights.
+//
+//   filters:
+//     - RequestCoalescing
+@Component
+public class RequestCoalescingGatewayFilterFactory extends AbstractGatewayFilterFactory<RequestCoalescingGatewayFilterFactory.Config> {
+
+    private final Map<String, Sinks.One<CoalescedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter upstreamCalls;
+    private final Counter coalesced;
+
+    public RequestCoalescingGatewayFilterFactory(MeterRegistry registry) {
+        super(Config.class);
+        this.upstreamCalls = Counter.builder("gateway.coalescing.requests")
+                .description("Requests of routes with the RequestCoalescing filter")
+                .tag("role", "leader")
+                .register(registry);
+        this.coalesced = Counter.builder("gateway.coalescing.requests")
+                .description("Requests of routes with the RequestCoalescing filter")
+                .tag("role", "follower")
+                .register(registry);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            HttpMethod method = exchange.getRequest().getMethod();
+            if (method != HttpMethod.GET && method != HttpMethod.HEAD){
+                return chain.filter(exchange);
+            }
+            return keyOf(exchange, config)
+                    .flatMap(key -> {
+                        Sinks.One<CoalescedResponse> response = Sinks.one();
+                        Sinks.One<CoalescedResponse> leader = inFlight.putIfAbsent(key, response);
+                        if (leader != null){
+                            coalesced.increment();
+                            // write() completes empty as well, only a leader without response sends us upstream
+                            return leader.asMono()
+                                    .map(Optional::of)
+                                    .defaultIfEmpty(Optional.empty())
+                                    .flatMap(shared -> shared.isPresent()
+                                            ? write(exchange.getResponse(), shared.get())
+                                            : chain.filter(exchange));
+                        }
+                        upstreamCalls.increment();
+                        return lead(exchange, chain, key, response);
+                    });
+        };
+    }
+
+    private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain,
+                            String key, Sinks.One<CoalescedResponse> response) {
+        // written for the leader by the filters before this one
+        Set<String> ownHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        ownHeaders.addAll(exchange.getResponse().getHeaders().keySet());
+        ServerWebExchange sharing = exchange.mutate()
+                .response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        HttpHeaders headers = getDelegate().getHeaders();
+                        Integer status = getDelegate().getRawStatusCode();
+                        // a cookie belongs to the leader alone
+                        if (status == null || headers.containsKey(HttpHeaders.SET_COOKIE)){
+                            inFlight.remove(key, response);
+                            response.tryEmitEmpty();
+                            return super.writeWith(body);
+                        }
+                        return DataBufferUtils.join(Flux.from(body))
+                                .map(joined -> {
+                                    byte[] bytes = new byte[joined.readableByteCount()];
+                                    joined.read(bytes);
+                                    DataBufferUtils.release(joined);
+                                    return bytes;
+                                })
+                                .defaultIfEmpty(new byte[0])
+                                .flatMap(bytes -> {
+                                    // Requests arriving from now on start a new call, they might need a newer response
+                                    inFlight.remove(key, response);
+                                    response.tryEmitValue(new CoalescedResponse(status, sharedHeaders(headers, ownHeaders), bytes));
+                                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                                });
+                    }
+                })
+                .build();
+
+        return chain.filter(sharing)
+                .doFinally(signal -> {
+                    inFlight.remove(key, response);
+                    response.tryEmitEmpty();
+                });
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, CoalescedResponse shared) {
+        response.setRawStatusCode(shared.status());
+        // the headers, which the filters before wrote for this caller, stay
+        shared.headers().forEach(response.getHeaders()::putIfAbsent);
+        response.getHeaders().setContentLength(shared.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(shared.body())));
+    }
+
+    private static Mono<String> keyOf(ServerWebExchange exchange, Config config) {
+        StringBuilder key = new StringBuilder(exchange.getRequest().getMethodValue())
+                .append(' ')
+                .append(ResponseCache.keyOf(exchange.getRequest()));
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        // a 304 for the If-None-Match of one client would be wrong for all the others
+        key.append(" if-none-match=").append(headers.getIfNoneMatch())
+                .append(" if-modified-since=").append(headers.getIfModifiedSince());
+        for (String name : config.getVaryHeaders()) {
+            key.append(' ').append(name.toLowerCase()).append('=').append(headers.getOrEmpty(name));
+        }
+        if (!config.isVaryOnAuthorities()){
+            return Mono.just(key.toString());
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(authentication -> authentication.getAuthorities()
+                        .stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .sorted()
+                        .collect(Collectors.joining(",")))
+                .defaultIfEmpty("anonymous")
+                .map(authorities -> key.append(" authorities=").append(authorities).toString());
+    }
+
+    // The headers of the upstream response, without those of the connection of the leader and of its rate limit
+    private static HttpHeaders sharedHeaders(HttpHeaders headers, Set<String> ownHeaders) {
+        HttpHeaders shared = new HttpHeaders();
+        headers.forEach((name, values) -> {
+            if (!ownHeaders.contains(name)
+                    && !name.regionMatches(true, 0, "X-RateLimit-", 0, "X-RateLimit-".length())
+                    && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)
+                    && !HttpHeaders.CONNECTION.equalsIgnoreCase(name)
+                    && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)){
+                shared.put(name, List.copyOf(values));
+            }
+        });
+        return HttpHeaders.readOnlyHttpHeaders(shared);
+    }
+
+    private record CoalescedResponse(int status, HttpHeaders headers, byte[] body) {}
+
+    @Data
+    public static class Config {
+        // request headers, which change the response (Accept is always part of the key)
+        private List<String> varyHeaders = List.of();
+        private boolean varyOnAuthorities = true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Upstream responses of the routes with the ResponseCache filter, bounded by their size in bytes.
+// An entry lives as long as it's fresh plus its stale-while-revalidate window.
+@Component
+public class ResponseCache implements MeterBinder {
+
+    private final Cache<String, CachedResponse> cache;
+    private final long maximumEntrySize;
+    // keys with a revalidation in flight, there is only one per key
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final LongAdder staleHits = new LongAdder();
+
+    public ResponseCache(@Value("${gateway.response-cache.maximum-size:64MB}") DataSize maximumSize,
+                         @Value("${gateway.response-cache.maximum-entry-size:1MB}") DataSize maximumEntrySize) {
+        this.maximumEntrySize = maximumEntrySize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((String key, CachedResponse response) -> key.length() * 2 + response.weight())
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                        return response.freshNanos() + response.staleNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return response.freshNanos() + response.staleNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    CachedResponse get(String key) {
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null && !cached.isFresh()){
+            staleHits.increment();
+        }
+        return cached;
+    }
+
+    void put(String key, CachedResponse response) {
+        if (response.body().length <= maximumEntrySize){
+            cache.put(key, response);
+        }
+    }
+
+    boolean startRevalidation(String key) {
+        return revalidating.add(key);
+    }
+
+    void endRevalidation(String key) {
+        revalidating.remove(key);
+    }
+
+    // Path, the query parameters sorted by name and the Accept header (JSON array or NDJSON stream)
+    static String keyOf(ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(request.getPath().value());
+        char separator = '?';
+        for (Map.Entry<String, List<String>> parameter : new TreeMap<>(request.getQueryParams()).entrySet()) {
+            for (String value : parameter.getValue()) {
+                key.append(separator).append(parameter.getKey()).append('=').append(value);
+                separator = '&';
+            }
+        }
+        String accept = request.getHeaders().getFirst(HttpHeaders.ACCEPT);
+        return key.append(" accept=").append(accept == null ? "*/*" : accept).toString();
+    }
+
+    // cache.gets (hit/miss), the stale hits and the bytes held by the cache
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache, "gatewayResponse", Collections.emptyList())
+                .bindTo(registry);
+        FunctionCounter.builder("gateway.response-cache.stale", staleHits, LongAdder::sum)
+                .description("Stale responses served, while they were revalidated")
+                .register(registry);
+        Gauge.builder("gateway.response-cache.size", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .description("Bytes held by the response cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
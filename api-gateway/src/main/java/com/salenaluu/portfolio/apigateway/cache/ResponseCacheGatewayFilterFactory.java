@@ -0,0 +1,238 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Caches GET responses of public routes, which are the same for every caller:
+//
+//   fresh      served from the cache
+//   stale      served from the cache to every request, the first one also starts a revalidation upstream
+//              (stale-while-revalidate)
+//   missing    forwarded, a cacheable response is stored on its way to the client
+//
+// The revalidation runs in the background on an own exchange, no client waits for it or gets its response.
+// It sends the cached ETag, so an unchanged response costs the upstream only a 304.
+// Cache-Control of the upstream wins over the route config: no-store/private aren't stored, no-cache is always
+// revalidated, s-maxage/max-age and stale-while-revalidate replace the defaults.
+//
+//   filters:
+//     - ResponseCache=10s,60s
+@Slf4j
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+    private static final List<String> CACHED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.VARY);
+
+    private final ResponseCache responseCache;
+
+    public ResponseCacheGatewayFilterFactory(ResponseCache responseCache) {
+        super(Config.class);
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("timeToLive", "staleWhileRevalidate");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET){
+                return chain.filter(exchange);
+            }
+            String key = ResponseCache.keyOf(exchange.getRequest());
+            CachedResponse cached = responseCache.get(key);
+            if (cached == null){
+                return chain.filter(storing(exchange, key, null, config));
+            }
+            if (!cached.isFresh() && responseCache.startRevalidation(key)){
+                revalidate(exchange, chain, key, cached, config);
+            }
+            return write(exchange, cached);
+        };
+    }
+
+    // Sends the request upstream once more, detached from the client: it has its own response and attributes, so the
+    // routing filters don't touch the response, which the client already got from the cache
+    private void revalidate(ServerWebExchange exchange, GatewayFilterChain chain,
+                            String key, CachedResponse cached, Config config) {
+        // a copy, mutate() would change the writable headers of the client's request in place
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(exchange.getRequest().getHeaders());
+        headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+        headers.remove(HttpHeaders.IF_NONE_MATCH);
+        if (cached.eTag() != null){
+            headers.setIfNoneMatch(cached.eTag());
+        }
+        ServerWebExchange mutated = exchange.mutate()
+                .request(new ServerHttpRequestDecorator(exchange.getRequest()) {
+                    @Override
+                    public HttpHeaders getHeaders() {
+                        return headers;
+                    }
+                })
+                .response(new RevalidationResponse(exchange.getResponse().bufferFactory()))
+                .build();
+        Map<String, Object> attributes = new ConcurrentHashMap<>(exchange.getAttributes());
+        ServerWebExchange revalidation = new ServerWebExchangeDecorator(mutated) {
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+        };
+
+        Mono.defer(() -> chain.filter(storing(revalidation, key, cached, config)))
+                .doFinally(signal -> responseCache.endRevalidation(key))
+                .subscribe(null, error -> log.warn("Revalidation of {} failed, the stale response is served on", key, error));
+    }
+
+    // Stores the upstream response, while it's written to the client (or dropped, for a revalidation)
+    private ServerWebExchange storing(ServerWebExchange exchange, String key, CachedResponse revalidated, Config config) {
+        ServerHttpResponse response = exchange.getResponse();
+        return exchange.mutate()
+                .response(new ServerHttpResponseDecorator(response) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        HttpHeaders headers = getDelegate().getHeaders();
+                        Integer status = getDelegate().getRawStatusCode();
+                        long[] lifetime = lifetimeOf(headers, config);
+
+                        if (revalidated != null && status != null && status == HttpStatus.NOT_MODIFIED.value()){
+                            // Unchanged: the copy is fresh again
+                            responseCache.put(key, lifetime == null
+                                    ? revalidated
+                                    : revalidated.revalidated(lifetime[0], lifetime[1]));
+                            return super.writeWith(body);
+                        }
+                        if (lifetime == null || status == null || status != HttpStatus.OK.value()){
+                            return super.writeWith(body);
+                        }
+                        return DataBufferUtils.join(Flux.from(body))
+                                .flatMap(joined -> {
+                                    byte[] bytes = new byte[joined.readableByteCount()];
+                                    joined.read(bytes);
+                                    DataBufferUtils.release(joined);
+                                    responseCache.put(key, new CachedResponse(
+                                            status, cachedHeaders(headers), bytes, System.nanoTime(), lifetime[0], lifetime[1]));
+                                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                                });
+                    }
+                })
+                .build();
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.putAll(cached.headers());
+        headers.set(HttpHeaders.AGE, Long.toString(cached.ageSeconds()));
+        if (matches(exchange.getRequest().getHeaders().getIfNoneMatch(), cached.eTag())){
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+        response.setRawStatusCode(cached.status());
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String eTag) {
+        if (eTag == null){
+            return false;
+        }
+        String strong = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*")
+                || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(strong));
+    }
+
+    // {fresh, stale} in nanos, null if the response mustn't be stored
+    private static long[] lifetimeOf(HttpHeaders headers, Config config) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE) || headers.getVary().contains("*")){
+            return null;
+        }
+        long fresh = config.getTimeToLive().toNanos();
+        long stale = config.getStaleWhileRevalidate().toNanos();
+        Long maxAge = null;
+        Long sharedMaxAge = null;
+        for (String directive : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)
+                .stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .toList()) {
+            if (directive.equals("no-store") || directive.equals("private")){
+                return null;
+            } else if (directive.equals("no-cache")){
+                fresh = 0;
+            } else if (directive.startsWith("s-maxage=")){
+                sharedMaxAge = seconds(directive);
+            } else if (directive.startsWith("max-age=")){
+                maxAge = seconds(directive);
+            } else if (directive.startsWith("stale-while-revalidate=")){
+                Long seconds = seconds(directive);
+                if (seconds != null){
+                    stale = Duration.ofSeconds(seconds).toNanos();
+                }
+            }
+        }
+        Long upstreamMaxAge = sharedMaxAge != null ? sharedMaxAge : maxAge;
+        if (upstreamMaxAge != null && fresh != 0){
+            fresh = Duration.ofSeconds(upstreamMaxAge).toNanos();
+        }
+        return new long[]{fresh, stale};
+    }
+
+    private static Long seconds(String directive) {
+        try {
+            return Math.max(0, Long.parseLong(directive.substring(directive.indexOf('=') + 1).replace("\"", "")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static HttpHeaders cachedHeaders(HttpHeaders headers) {
+        HttpHeaders cached = new HttpHeaders();
+        for (String name : CACHED_HEADERS) {
+            List<String> values = headers.get(name);
+            if (values != null){
+                cached.put(name, List.copyOf(values));
+            }
+        }
+        return HttpHeaders.readOnlyHttpHeaders(cached);
+    }
+
+    @Data
+    public static class Config {
+        private Duration timeToLive = Duration.ofSeconds(10);
+        private Duration staleWhileRevalidate = Duration.ofSeconds(60);
+    }
+}
@@ -0,0 +1,10 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+// Every lb:// route (blog-post, notification, user-management) uses the PeakEwmaLoadBalancer instead of round robin
+@Configuration
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+public class LatencyAwareLoadBalancing {
+}
@@ -0,0 +1,61 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Latency of one instance as peak EWMA (like Finagle/Linkerd): a slower response raises it at once,
+// faster ones lower it with a weight, which depends on the time since the last response. Without responses it decays
+// towards 0, so an instance, which was slow once, gets a request again after a while.
+class PeakEwma {
+    private final double decayNanos;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // guarded by this for writes
+    private volatile double ewmaNanos;
+    private volatile long stamp;
+
+    PeakEwma(long decayNanos, long now) {
+        this.decayNanos = decayNanos;
+        this.stamp = now;
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    void complete(long rttNanos, long now) {
+        outstanding.decrementAndGet();
+        synchronized (this) {
+            double weight = weight(now);
+            ewmaNanos = rttNanos > ewmaNanos ? rttNanos : ewmaNanos * weight + rttNanos * (1 - weight);
+            stamp = Math.max(stamp, now);
+        }
+    }
+
+    // A cancelled request tells nothing about the latency
+    void cancel() {
+        outstanding.decrementAndGet();
+    }
+
+    // Expected latency of one more request: the latency times the requests, which it waits for.
+    // An instance without latency yet (new or idle) costs the penalty, as soon as it has a request, so a new
+    // instance isn't flooded before its first response.
+    double cost(long now, long penaltyNanos) {
+        int pending = outstanding.get();
+        double latency = decayed(now);
+        if (latency == 0 && pending > 0){
+            latency = penaltyNanos;
+        }
+        return latency * (pending + 1);
+    }
+
+    private double decayed(long now) {
+        return ewmaNanos * weight(now);
+    }
+
+    private double weight(long now) {
+        return Math.exp(-Math.max(0, now - stamp) / decayNanos);
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+}
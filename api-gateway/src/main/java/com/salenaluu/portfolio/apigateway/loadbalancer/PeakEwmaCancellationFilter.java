@@ -0,0 +1,53 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+// The ReactiveLoadBalancerClientFilter reports only responses and errors to the LoadBalancerLifecycle, not a request,
+// which was cancelled (client gone, losing hedge, coalesced leader). Without this filter the PeakEwmaLoadBalancer
+// would count each of them as outstanding forever and avoid the instance.
+// Runs right after the load balancer, so the exchange (of the hedge attempt) holds the chosen instance.
+@Component
+public class PeakEwmaCancellationFilter implements GlobalFilter, Ordered {
+    private final LoadBalancerClientFactory clientFactory;
+
+    public PeakEwmaCancellationFilter(LoadBalancerClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return chain.filter(exchange)
+                .doOnCancel(() -> cancelled(exchange));
+    }
+
+    private void cancelled(ServerWebExchange exchange) {
+        Response<ServiceInstance> chosen = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (chosen == null || !chosen.hasServer() || route == null || route.getUri().getHost() == null){
+            return;
+        }
+        // the load balancer of the service is in the child context named like the host of lb://<service>
+        PeakEwmaLoadBalancer loadBalancer = clientFactory.getInstance(route.getUri().getHost(), PeakEwmaLoadBalancer.class);
+        if (loadBalancer != null){
+            loadBalancer.onCancel(chosen.getServer());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
@@ -0,0 +1,204 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+// Power of two choices over the peak EWMA latency of the instances: picks two instances at random and sends the
+// request to the one with the lower cost (latency times outstanding requests). A slow or GC-pausing instance
+// gets hardly any requests, while no instance has to be compared with all others.
+//
+// The ReactiveLoadBalancerClientFilter of the gateway reports start and end of every request through the
+// LoadBalancerLifecycle. A failed request (error, 5xx) counts as slow as the failure penalty, so an instance,
+// which fails fast, doesn't attract the traffic. It doesn't report a cancelled request (client gone, losing hedge,
+// coalesced leader), the PeakEwmaCancellationFilter does.
+// The latency of an instance, which isn't in the list of the service anymore, is forgotten.
+@Slf4j
+public class PeakEwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+        LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+    // exchange attribute with the id of an instance, which the request should not go to (e.g. the one a hedged
+    // request waits for)
+    public static final String EXCLUDED_INSTANCE_ATTR = PeakEwmaLoadBalancer.class.getName() + ".excludedInstance";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final long decayNanos;
+    private final long failurePenaltyNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, PeakEwma> instances = new ConcurrentHashMap<>();
+    // the list of instances, which the stats were last pruned to
+    private volatile List<ServiceInstance> knownInstances = List.of();
+
+    public PeakEwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                String serviceId, Duration decayTime, Duration failurePenalty, LongSupplier nanoClock) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.decayNanos = decayTime.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        Object excluded = excludedInstanceOf(request);
+        return supplier.get(request)
+                .next()
+                .map(serviceInstances -> choose(serviceInstances, excluded));
+    }
+
+    // The gateway passes the attributes of the exchange with the RequestData
+    private static Object excludedInstanceOf(Request request) {
+        if (request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null
+                && context.getClientRequest().getAttributes() != null){
+            return context.getClientRequest().getAttributes().get(EXCLUDED_INSTANCE_ATTR);
+        }
+        return null;
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> serviceInstances, Object excluded) {
+        if (serviceInstances.isEmpty()){
+            log.warn("No instances of {} available", serviceId);
+            return new EmptyResponse();
+        }
+        forgetGoneInstances(serviceInstances);
+        if (excluded != null){
+            // no other instance: empty, a second request to the same instance wouldn't help
+            serviceInstances = serviceInstances.stream()
+                    .filter(instance -> !excluded.equals(instance.getInstanceId()))
+                    .toList();
+            if (serviceInstances.isEmpty()){
+                return new EmptyResponse();
+            }
+        }
+        int size = serviceInstances.size();
+        if (size == 1){
+            return new DefaultResponse(serviceInstances.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first){
+            second++;
+        }
+        ServiceInstance a = serviceInstances.get(first);
+        ServiceInstance b = serviceInstances.get(second);
+        long now = nanoClock.getAsLong();
+        return new DefaultResponse(statsOf(a).cost(now, failurePenaltyNanos) <= statsOf(b).cost(now, failurePenaltyNanos) ? a : b);
+    }
+
+    // The cache of Spring Cloud LoadBalancer hands out the same list, until the instances change
+    private void forgetGoneInstances(List<ServiceInstance> serviceInstances) {
+        if (serviceInstances == knownInstances){
+            return;
+        }
+        knownInstances = serviceInstances;
+        Set<String> current = serviceInstances.stream()
+                .map(PeakEwmaLoadBalancer::keyOf)
+                .collect(Collectors.toSet());
+        instances.keySet().retainAll(current);
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()){
+            return;
+        }
+        TimedRequestContext context = request.getContext();
+        if (context != null){
+            context.setRequestStartTime(nanoClock.getAsLong());
+        }
+        statsOf(lbResponse.getServer()).start();
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer() || completionContext.status() == CompletionContext.Status.DISCARD){
+            return;
+        }
+        // the instance is gone
+        PeakEwma stats = instances.get(keyOf(lbResponse.getServer()));
+        if (stats == null){
+            return;
+        }
+        Request<RequestDataContext> request = completionContext.getLoadBalancerRequest();
+        TimedRequestContext context = request != null ? request.getContext() : null;
+        if (context == null || context.getRequestStartTime() == 0){
+            stats.cancel();
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        long rttNanos = now - context.getRequestStartTime();
+        stats.complete(failed(completionContext) ? Math.max(rttNanos, failurePenaltyNanos) : rttNanos, now);
+    }
+
+    // The request to the instance was cancelled before its response, it tells nothing about the latency
+    public void onCancel(ServiceInstance instance) {
+        PeakEwma stats = instances.get(keyOf(instance));
+        if (stats != null){
+            stats.cancel();
+        }
+    }
+
+    private static boolean failed(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        if (completionContext.status() == CompletionContext.Status.FAILED){
+            return true;
+        }
+        ResponseData response = completionContext.getClientResponse();
+        return response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError();
+    }
+
+    private PeakEwma statsOf(ServiceInstance instance) {
+        String key = keyOf(instance);
+        PeakEwma stats = instances.get(key);
+        return stats != null ? stats : instances.computeIfAbsent(key, id -> new PeakEwma(decayNanos, nanoClock.getAsLong()));
+    }
+
+    private static String keyOf(ServiceInstance instance) {
+        return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getHost() + ':' + instance.getPort();
+    }
+
+    int getOutstanding(ServiceInstance instance) {
+        PeakEwma stats = instances.get(keyOf(instance));
+        return stats != null ? stats.getOutstanding() : 0;
+    }
+
+    boolean knows(ServiceInstance instance) {
+        return instances.containsKey(keyOf(instance));
+    }
+}
@@ -0,0 +1,26 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+// Configuration of the child context, which Spring Cloud LoadBalancer creates for every service.
+// Not a @Configuration, otherwise the component scan would put it into the context of the gateway.
+public class PeakEwmaLoadBalancerConfiguration {
+
+    // The concrete type, so the ReactiveLoadBalancerClientFilter finds the load balancer as LoadBalancerLifecycle too
+    @Bean
+    public PeakEwmaLoadBalancer peakEwmaLoadBalancer(Environment environment,
+                                                     LoadBalancerClientFactory loadBalancerClientFactory,
+                                                     @Value("${gateway.load-balancer.decay-time:10s}") Duration decayTime,
+                                                     @Value("${gateway.load-balancer.failure-penalty:1s}") Duration failurePenalty) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new PeakEwmaLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId, decayTime, failurePenalty, System::nanoTime);
+    }
+}
@@ -0,0 +1,102 @@
+package com.salenaluu.portfolio.apigateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket per route and key (subject or IP) in memory, the RedisRateLimiter without Redis.
+// Every bucket is a single AtomicLong: the time, at which the bucket will be full again (GCRA).
+// A request takes its tokens by moving that time forward with a CAS loop. Only a new bucket may wait for a lock
+// inside Caffeine, the lookup key and the response still cost an allocation per request.
+// Idle buckets are full anyway, so Caffeine can evict them and the memory stays bounded.
+//
+//   filters:
+//     - name: RequestRateLimiter
+//       args:
+//         local-rate-limiter.replenish-rate: 20
+//         local-rate-limiter.burst-capacity: 40
+@Component
+public class LocalRateLimiter extends AbstractRateLimiter<LocalRateLimiter.Config> {
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+    public static final String REQUESTED_TOKENS_HEADER = "X-RateLimit-Requested-Tokens";
+
+    private final Config defaultConfig;
+    private final Cache<String, AtomicLong> buckets;
+
+    public LocalRateLimiter(ConfigurationService configurationService,
+                            @Value("${gateway.rate-limiter.replenish-rate:50}") int replenishRate,
+                            @Value("${gateway.rate-limiter.burst-capacity:100}") int burstCapacity,
+                            @Value("${gateway.rate-limiter.maximum-keys:1000000}") long maximumKeys,
+                            @Value("${gateway.rate-limiter.idle-timeout:1m}") Duration idleTimeout) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.defaultConfig = new Config()
+                .setReplenishRate(replenishRate)
+                .setBurstCapacity(burstCapacity);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+        if (config.getReplenishRate() <= 0 || config.getBurstCapacity() <= 0){
+            throw new IllegalArgumentException("Rate limit of route " + routeId + " needs a replenish-rate and burst-capacity > 0");
+        }
+        AtomicLong fullAt = buckets.get(routeId + ':' + id, key -> new AtomicLong(Long.MIN_VALUE));
+
+        long tokenInterval = TimeUnit.SECONDS.toNanos(1) / config.getReplenishRate();
+        long capacity = tokenInterval * config.getBurstCapacity();
+        long requested = tokenInterval * config.getRequestedTokens();
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + requested;
+            long used = next - now;
+            if (used > capacity){
+                return Mono.just(new Response(false, headers(config, 0, used - capacity)));
+            }
+            if (fullAt.compareAndSet(current, next)){
+                return Mono.just(new Response(true, headers(config, (capacity - used) / tokenInterval, 0)));
+            }
+        }
+    }
+
+    private static Map<String, String> headers(Config config, long remaining, long retryAfterNanos) {
+        Map<String, String> headers = new HashMap<>(6);
+        headers.put(REMAINING_HEADER, Long.toString(remaining));
+        headers.put(REPLENISH_RATE_HEADER, Integer.toString(config.getReplenishRate()));
+        headers.put(BURST_CAPACITY_HEADER, Integer.toString(config.getBurstCapacity()));
+        headers.put(REQUESTED_TOKENS_HEADER, Integer.toString(config.getRequestedTokens()));
+        if (retryAfterNanos > 0){
+            headers.put(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999))));
+        }
+        return headers;
+    }
+
+    @Data
+    @Accessors(chain = true)
+    public static class Config {
+        // tokens per second
+        private int replenishRate;
+        private int burstCapacity;
+        private int requestedTokens = 1;
+    }
+}
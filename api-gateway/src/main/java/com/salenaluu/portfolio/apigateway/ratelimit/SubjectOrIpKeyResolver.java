@@ -0,0 +1,27 @@
+package com.salenaluu.portfolio.apigateway.ratelimit;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+
+// The authenticated subject, otherwise the remote address. An empty key is denied by the RequestRateLimiter.
+@Component
+public class SubjectOrIpKeyResolver implements KeyResolver {
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return exchange.getPrincipal()
+                .map(Principal::getName)
+                .map(subject -> "sub:" + subject)
+                .switchIfEmpty(Mono.defer(() -> {
+                    InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+                    return remoteAddress == null || remoteAddress.getAddress() == null
+                            ? Mono.empty()
+                            : Mono.just("ip:" + remoteAddress.getAddress().getHostAddress());
+                }));
+    }
+}
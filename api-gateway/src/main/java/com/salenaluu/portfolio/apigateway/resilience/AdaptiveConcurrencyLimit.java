@@ -0,0 +1,147 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Limit of concurrent requests to one downstream service, which follows its latency (gradient, like Envoy's
+// adaptive concurrency filter).
+//
+//  1. minRTT: from time to time the limit drops to minLimit for a few requests. Without queueing in the service,
+//     the median of their RTTs is the latency, the service can do.
+//  2. Every updateInterval the limit follows the gradient between that minRTT (plus a buffer) and the average RTT
+//     of the interval: while requests don't queue up it grows (up to 2x per interval, plus a headroom of sqrt),
+//     once they do, it shrinks (down to 0.5x). Failures (5xx, errors) back it off.
+//
+// Measuring minRTT again, instead of averaging the RTT under load, keeps the baseline from creeping up with the queue.
+class AdaptiveConcurrencyLimit {
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double buffer;
+    private final long updateIntervalNanos;
+    private final long minRttIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private boolean measuringMinRtt = true;
+    private long minRttMeasurementStart;
+    private final long[] minRttSamples;
+    private int minRttSampleCount;
+    private double minRtt;
+    private long nextMinRttMeasurement;
+    private long intervalStart;
+    private double rttSum;
+    private int rttCount;
+    private int failures;
+    private int maxInFlight;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double buffer,
+                             Duration updateInterval, Duration minRttInterval, int minRttRequests, LongSupplier nanoClock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.buffer = buffer;
+        this.updateIntervalNanos = updateInterval.toNanos();
+        this.minRttIntervalNanos = minRttInterval.toNanos();
+        this.minRttSamples = new long[minRttRequests];
+        this.nanoClock = nanoClock;
+        this.estimatedLimit = initialLimit;
+        this.limit = minLimit;
+        this.minRttMeasurementStart = nanoClock.getAsLong();
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit){
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    // A request, which was cancelled by its client, tells nothing about the service
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    void release(long rttNanos, boolean failed) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        sample(rttNanos, inFlightAtCompletion, failed, nanoClock.getAsLong());
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtCompletion, boolean failed, long now) {
+        if (measuringMinRtt){
+            // Requests from before the limit dropped still queue up, they would spoil minRTT
+            boolean startedAfterDrop = now - rttNanos - minRttMeasurementStart >= 0;
+            if (!failed && startedAfterDrop && inFlightAtCompletion <= minLimit){
+                minRttSamples[minRttSampleCount++] = rttNanos;
+            }
+            if (minRttSampleCount == minRttSamples.length){
+                Arrays.sort(minRttSamples);
+                minRtt = minRttSamples[minRttSamples.length / 2];
+                measuringMinRtt = false;
+                nextMinRttMeasurement = now + minRttIntervalNanos;
+                startInterval(now);
+                limit = (int) estimatedLimit;
+            }
+            return;
+        }
+
+        if (failed){
+            failures++;
+        } else {
+            rttSum += rttNanos;
+            rttCount++;
+        }
+        maxInFlight = Math.max(maxInFlight, inFlightAtCompletion);
+        if (now - intervalStart < updateIntervalNanos){
+            return;
+        }
+
+        if (failures > 0){
+            estimatedLimit *= BACKOFF;
+        } else if (rttCount > 0){
+            double gradient = Math.max(0.5, Math.min(2.0, minRtt * (1 + buffer) / (rttSum / rttCount)));
+            // Only a limit, which was used, may grow, otherwise an idle service would get any limit
+            if (gradient < 1 || maxInFlight >= estimatedLimit / 2){
+                double newLimit = estimatedLimit * gradient;
+                estimatedLimit = newLimit + Math.sqrt(newLimit);
+            }
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        startInterval(now);
+
+        if (now - nextMinRttMeasurement >= 0){
+            measuringMinRtt = true;
+            minRttMeasurementStart = now;
+            minRttSampleCount = 0;
+            limit = minLimit;
+        } else {
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    private void startInterval(long now) {
+        intervalStart = now;
+        rttSum = 0;
+        rttCount = 0;
+        failures = 0;
+        maxInFlight = 0;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,188 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import com.salenaluu.portfolio.apigateway.utils.LoggingFilter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+// Protects a downstream service from more requests, than it can answer in time:
+//
+//   concurrency limit  the service gets at most `limit` requests at a time, the limit follows its latency
+//                      (see AdaptiveConcurrencyLimit). Any request above it is answered with 503 right away,
+//                      instead of waiting in a queue in front of a slow service.
+//   circuit breaker    when too many calls fail (5xx, errors), the service gets no requests for a while (503)
+//
+// Limit and circuit breaker belong to the service (the host of lb://blog-post or the service arg), so all routes
+// to one service share them. Put the filter after ResponseCache and RequestCoalescing, so requests, which don't
+// reach the service, don't take a slot.
+//
+//   filters:
+//     - AdaptiveConcurrencyLimit
+@Component
+public class AdaptiveConcurrencyLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<AdaptiveConcurrencyLimitGatewayFilterFactory.Config> {
+    private static final Throwable SERVER_ERROR = new IllegalStateException("Upstream answered with 5xx");
+
+    private final MeterRegistry registry;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double buffer;
+    private final Duration updateInterval;
+    private final Duration minRttInterval;
+    private final int minRttRequests;
+    private final Duration retryAfterCircuitOpen;
+    private final Map<String, Service> services = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimitGatewayFilterFactory(MeterRegistry registry,
+                                                        CircuitBreakerRegistry circuitBreakers,
+                                                        @Value("${gateway.concurrency-limit.initial-limit:20}") int initialLimit,
+                                                        @Value("${gateway.concurrency-limit.min-limit:3}") int minLimit,
+                                                        @Value("${gateway.concurrency-limit.max-limit:1000}") int maxLimit,
+                                                        @Value("${gateway.concurrency-limit.buffer:0.25}") double buffer,
+                                                        @Value("${gateway.concurrency-limit.update-interval:100ms}") Duration updateInterval,
+                                                        @Value("${gateway.concurrency-limit.min-rtt-interval:30s}") Duration minRttInterval,
+                                                        @Value("${gateway.concurrency-limit.min-rtt-requests:25}") int minRttRequests) {
+        super(Config.class);
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit){
+            throw new IllegalArgumentException("Concurrency limit needs 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.registry = registry;
+        this.circuitBreakers = circuitBreakers;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.buffer = buffer;
+        this.updateInterval = updateInterval;
+        this.minRttInterval = minRttInterval;
+        this.minRttRequests = minRttRequests;
+        this.retryAfterCircuitOpen = Duration.ofMillis(circuitBreakers.getDefaultConfig()
+                .getWaitIntervalFunctionInOpenState()
+                .apply(1));
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("service");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            Service service = serviceOf(exchange, config);
+            CircuitBreaker circuitBreaker = service.circuitBreaker;
+            if (!circuitBreaker.tryAcquirePermission()){
+                service.rejectedCircuitOpen.increment();
+                return reject(exchange, retryAfterCircuitOpen);
+            }
+            if (!service.limit.tryAcquire()){
+                circuitBreaker.releasePermission();
+                service.rejectedLimit.increment();
+                return reject(exchange, Duration.ofSeconds(1));
+            }
+
+            // The slot is given back before the response completes downstream, otherwise the next request of the
+            // same client could still find it taken
+            long started = System.nanoTime();
+            return chain.filter(exchange)
+                    .doOnSuccess(done -> complete(service, exchange, started, SignalType.ON_COMPLETE))
+                    .doOnError(error -> complete(service, exchange, started, SignalType.ON_ERROR))
+                    .doOnCancel(() -> {
+                        service.limit.release();
+                        circuitBreaker.releasePermission();
+                    });
+        };
+    }
+
+    private static void complete(Service service, ServerWebExchange exchange, long started, SignalType signal) {
+        long rttNanos = System.nanoTime() - started;
+        boolean failed = LoggingFilter.statusOf(exchange.getResponse(), signal) >= 500;
+        service.limit.release(rttNanos, failed);
+        if (failed){
+            service.circuitBreaker.onError(rttNanos, TimeUnit.NANOSECONDS, SERVER_ERROR);
+        } else {
+            service.circuitBreaker.onSuccess(rttNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Service serviceOf(ServerWebExchange exchange, Config config) {
+        String name = config.getService();
+        if (name == null){
+            Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+            name = route == null || route.getUri().getHost() == null ? "none" : route.getUri().getHost();
+        }
+        Service service = services.get(name);
+        return service != null ? service : services.computeIfAbsent(name, Service::new);
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, Duration retryAfter) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter.toSeconds())));
+        return response.setComplete();
+    }
+
+    private class Service {
+        private final AdaptiveConcurrencyLimit limit;
+        private final CircuitBreaker circuitBreaker;
+        private final Counter rejectedLimit;
+        private final Counter rejectedCircuitOpen;
+
+        Service(String name) {
+            this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, buffer,
+                    updateInterval, minRttInterval, minRttRequests, System::nanoTime);
+            this.circuitBreaker = circuitBreakers.circuitBreaker(name);
+            this.rejectedLimit = rejected(name, "limit");
+            this.rejectedCircuitOpen = rejected(name, "circuit-open");
+            Gauge.builder("gateway.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Requests, which the service may get at a time")
+                    .tag("service", name)
+                    .register(registry);
+            Gauge.builder("gateway.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests, which are waiting for the service")
+                    .tag("service", name)
+                    .register(registry);
+            // 0 closed, 1 open, 2 half open
+            Gauge.builder("gateway.circuit-breaker.state", circuitBreaker, breaker -> breaker.getState().getOrder())
+                    .description("State of the circuit breaker of the service")
+                    .tag("service", name)
+                    .register(registry);
+        }
+
+        private Counter rejected(String name, String reason) {
+            return Counter.builder("gateway.concurrency.rejected")
+                    .description("Requests, which were answered with 503 instead of going to the service")
+                    .tag("service", name)
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+    }
+
+    @Data
+    public static class Config {
+        // the service, whose limit the route shares, default: the host of the route uri (lb://blog-post)
+        private String service;
+    }
+}
@@ -0,0 +1,80 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The response of one attempt of a hedged request. It keeps status, headers and body, until it's clear, which
+// attempt answered first, and only the winner is written to the client.
+class BufferedServerHttpResponse extends AbstractServerHttpResponse {
+    // guarded by this
+    private DataBuffer body;
+    private boolean discarded;
+
+    BufferedServerHttpResponse(DataBufferFactory dataBufferFactory) {
+        super(dataBufferFactory);
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+        return DataBufferUtils.join(Flux.from(body))
+                .doOnNext(this::keep)
+                .then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return writeWithInternal(Flux.from(body).concatMap(Flux::from));
+    }
+
+    private synchronized void keep(DataBuffer joined) {
+        if (discarded){
+            DataBufferUtils.release(joined);
+        } else {
+            body = joined;
+        }
+    }
+
+    // The attempt lost, a body, which arrives later, is released right away
+    synchronized void discard() {
+        discarded = true;
+        if (body != null){
+            DataBufferUtils.release(body);
+            body = null;
+        }
+    }
+
+    Mono<Void> writeTo(ServerHttpResponse response) {
+        response.setRawStatusCode(getRawStatusCode());
+        response.getHeaders().putAll(getHeaders());
+        getCookies().values().forEach(cookies -> cookies.forEach(response::addCookie));
+        DataBuffer taken;
+        synchronized (this) {
+            taken = body;
+            body = null;
+        }
+        return taken == null ? response.setComplete() : response.writeWith(Mono.just(taken));
+    }
+
+    @Override
+    public <T> T getNativeResponse() {
+        throw new IllegalStateException("A buffered response has no native response");
+    }
+
+    @Override
+    protected void applyStatusCode() {
+    }
+
+    @Override
+    protected void applyHeaders() {
+    }
+
+    @Override
+    protected void applyCookies() {
+    }
+}
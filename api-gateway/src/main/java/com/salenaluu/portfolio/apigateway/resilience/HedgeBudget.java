@@ -0,0 +1,40 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caps hedged requests at a share of the requests of a route (like the retry budget of Finagle): every request
+// deposits percent/100 of a token, a hedge takes a whole one. The balance is bounded, so a quiet period
+// doesn't save up a flood of hedges.
+class HedgeBudget {
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long maximum;
+    private final AtomicLong balance = new AtomicLong();
+
+    HedgeBudget(int percent, int maximumHedges) {
+        this.deposit = TOKEN * percent / 100;
+        this.maximum = TOKEN * maximumHedges;
+    }
+
+    void deposit() {
+        while (true) {
+            long current = balance.get();
+            if (current >= maximum || balance.compareAndSet(current, Math.min(maximum, current + deposit))){
+                return;
+            }
+        }
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < TOKEN){
+                return false;
+            }
+            if (balance.compareAndSet(current, current - TOKEN)){
+                return true;
+            }
+        }
+    }
+}
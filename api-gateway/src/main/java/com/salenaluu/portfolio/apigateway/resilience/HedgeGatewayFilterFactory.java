@@ -0,0 +1,209 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import com.salenaluu.portfolio.apigateway.loadbalancer.PeakEwmaLoadBalancer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+// Hedged requests for idempotent GET routes: when the first attempt hasn't answered within the p95 latency of the
+// route, a second attempt goes to another instance. The client gets the answer, which comes first, the other
+// attempt is cancelled (its upstream connection is closed).
+//
+// Every attempt runs the rest of the chain (load balancer, routing) on its own copy of the exchange attributes and
+// into a BufferedServerHttpResponse, only the winner is written to the client. A hedge, which fails or answers with
+// 5xx (e.g. the AdaptiveConcurrencyLimit sheds it), never wins over the first attempt.
+// The hedges of a route are capped at budget-percent of its requests.
+//
+//   filters:
+//     - Hedge=10,0.95
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+    // set on the exchange of the second attempt
+    public static final String HEDGED_ATTR = HedgeGatewayFilterFactory.class.getName() + ".hedged";
+    private static final int SENT = 0, WON = 1, CANCELLED = 2, OVER_BUDGET = 3;
+    private static final String[] EVENTS = {"sent", "won", "cancelled", "over-budget"};
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+
+    public HedgeGatewayFilterFactory(MeterRegistry registry) {
+        super(Config.class);
+        this.registry = registry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("budgetPercent", "percentile");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        LatencyPercentile latency = new LatencyPercentile(config.getPercentile());
+        HedgeBudget budget = new HedgeBudget(config.getBudgetPercent(), config.getMaximumBurst());
+        long minimumDelayNanos = config.getMinimumDelay().toNanos();
+        return (exchange, chain) -> {
+            HttpMethod method = exchange.getRequest().getMethod();
+            if (method != HttpMethod.GET && method != HttpMethod.HEAD){
+                return chain.filter(exchange);
+            }
+            budget.deposit();
+            long started = System.nanoTime();
+            long delayNanos = latency.get();
+            // until the route has a p95
+            if (delayNanos < 0){
+                return chain.filter(exchange)
+                        .doFinally(signal -> latency.record(System.nanoTime() - started));
+            }
+
+            Counter[] events = countersOf(exchange);
+            Attempt first = new Attempt(exchange, false, null);
+            AtomicReference<Attempt> second = new AtomicReference<>();
+            Mono<Attempt> firstAnswer = first.run(chain)
+                    // a cancelled first attempt took at least this long
+                    .doFinally(signal -> latency.record(System.nanoTime() - started));
+            Mono<Attempt> secondAnswer = Mono.delay(Duration.ofNanos(Math.max(delayNanos, minimumDelayNanos)))
+                    .flatMap(tick -> {
+                        if (!budget.tryWithdraw()){
+                            events[OVER_BUDGET].increment();
+                            return Mono.never();
+                        }
+                        events[SENT].increment();
+                        Attempt hedge = new Attempt(exchange, true, first.instanceId());
+                        second.set(hedge);
+                        return hedge.run(chain)
+                                .filter(answered -> answered.status() < 500)
+                                .onErrorResume(error -> Mono.empty())
+                                .switchIfEmpty(Mono.never());
+                    });
+
+            return Mono.firstWithSignal(firstAnswer, secondAnswer)
+                    .flatMap(winner -> {
+                        Attempt hedge = second.get();
+                        // the slower attempt is cancelled
+                        if (hedge != null){
+                            if (winner == hedge){
+                                events[WON].increment();
+                            }
+                            events[CANCELLED].increment();
+                        }
+                        winner.copyAttributesTo(exchange);
+                        return winner.response.writeTo(exchange.getResponse());
+                    })
+                    .doFinally(signal -> {
+                        first.response.discard();
+                        Attempt hedge = second.get();
+                        if (hedge != null){
+                            hedge.response.discard();
+                        }
+                    });
+        };
+    }
+
+    private Counter[] countersOf(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        String routeId = route == null ? "none" : route.getId();
+        Counter[] routeCounters = counters.get(routeId);
+        return routeCounters != null ? routeCounters : counters.computeIfAbsent(routeId, this::counters);
+    }
+
+    private Counter[] counters(String routeId) {
+        Counter[] routeCounters = new Counter[EVENTS.length];
+        for (int i = 0; i < EVENTS.length; i++) {
+            routeCounters[i] = Counter.builder("gateway.hedge.requests")
+                    .description("Hedged requests: sent, won (the hedge answered first), cancelled (the slower attempt) and over-budget")
+                    .tag("route", routeId)
+                    .tag("event", EVENTS[i])
+                    .register(registry);
+        }
+        return routeCounters;
+    }
+
+    // One request upstream with its own attributes (the load balancer chooses again) and a buffered response
+    private static class Attempt {
+        private final Map<String, Object> attributes;
+        private final BufferedServerHttpResponse response;
+        private final ServerWebExchange exchange;
+
+        Attempt(ServerWebExchange original, boolean hedge, Object excludedInstance) {
+            this.attributes = new ConcurrentHashMap<>(original.getAttributes());
+            this.response = new BufferedServerHttpResponse(original.getResponse().bufferFactory());
+            if (hedge){
+                attributes.put(HEDGED_ATTR, true);
+                // the instance, which the first attempt waits for
+                if (excludedInstance != null){
+                    attributes.put(PeakEwmaLoadBalancer.EXCLUDED_INSTANCE_ATTR, excludedInstance);
+                }
+            }
+            this.exchange = new ServerWebExchangeDecorator(original) {
+                @Override
+                public ServerHttpResponse getResponse() {
+                    return response;
+                }
+
+                @Override
+                public Map<String, Object> getAttributes() {
+                    return attributes;
+                }
+            };
+        }
+
+        Mono<Attempt> run(GatewayFilterChain chain) {
+            return chain.filter(exchange).thenReturn(this);
+        }
+
+        int status() {
+            Integer status = response.getRawStatusCode();
+            return status == null ? 200 : status;
+        }
+
+        // The instance, the load balancer has chosen for this attempt so far
+        @SuppressWarnings("unchecked")
+        Object instanceId() {
+            Response<ServiceInstance> chosen = (Response<ServiceInstance>) attributes.get(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            return chosen != null && chosen.hasServer() ? chosen.getServer().getInstanceId() : null;
+        }
+
+        // For the metrics and the access log of the request
+        void copyAttributesTo(ServerWebExchange original) {
+            for (String name : new String[]{GATEWAY_LOADBALANCER_RESPONSE_ATTR, GATEWAY_REQUEST_URL_ATTR, HEDGED_ATTR}) {
+                Object value = attributes.get(name);
+                if (value != null){
+                    original.getAttributes().put(name, value);
+                }
+            }
+        }
+    }
+
+    @Data
+    public static class Config {
+        // hedges per 100 requests of the route
+        private int budgetPercent = 10;
+        // hedges, the budget saves up at most
+        private int maximumBurst = 10;
+        private double percentile = 0.95;
+        // no hedge before this delay, even if the route is faster
+        private Duration minimumDelay = Duration.ofMillis(5);
+    }
+}
@@ -0,0 +1,39 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A percentile of the latest latencies of a route: a ring of the last 1024 samples, sorted again after every
+// 128 new samples by the thread, which records the 128th. Until the first 128 samples, there's no percentile (-1).
+class LatencyPercentile {
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 128;
+
+    private final double percentile;
+    private final long[] samples = new long[SAMPLES];
+    private final AtomicLong count = new AtomicLong();
+    private volatile long value = -1;
+
+    LatencyPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples[(int) (index & (SAMPLES - 1))] = nanos;
+        if ((index + 1) % RECOMPUTE_EVERY == 0){
+            recompute((int) Math.min(index + 1, SAMPLES));
+        }
+    }
+
+    // Samples, which are overwritten while copying, only shift the percentile a bit
+    private void recompute(int size) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        value = sorted[Math.min(size - 1, (int) (size * percentile))];
+    }
+
+    long get() {
+        return value;
+    }
+}
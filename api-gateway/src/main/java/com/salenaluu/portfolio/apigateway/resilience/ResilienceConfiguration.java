@@ -0,0 +1,35 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ResilienceConfiguration {
+
+    // One circuit breaker per downstream service, it opens, when too many of the last calls failed (5xx, errors)
+    // or were slow, and lets a few calls through again after the wait duration
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(
+            @Value("${gateway.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${gateway.circuit-breaker.slow-call-rate-threshold:100}") float slowCallRateThreshold,
+            @Value("${gateway.circuit-breaker.slow-call-duration-threshold:10s}") Duration slowCallDurationThreshold,
+            @Value("${gateway.circuit-breaker.sliding-window-size:100}") int slidingWindowSize,
+            @Value("${gateway.circuit-breaker.minimum-number-of-calls:20}") int minimumNumberOfCalls,
+            @Value("${gateway.circuit-breaker.wait-duration-in-open-state:10s}") Duration waitDurationInOpenState,
+            @Value("${gateway.circuit-breaker.permitted-calls-in-half-open-state:5}") int permittedCallsInHalfOpenState) {
+        return CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDurationThreshold(slowCallDurationThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitDurationInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+                .build());
+    }
+}
@@ -0,0 +1,137 @@
+package com.salenaluu.portfolio.apigateway.routing;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+// The NettyRoutingFilter with an own connection pool and protocol per lb:// service, instead of one shared pool.
+// A burst to blog-post can't take the connections of notification, and blog-post can talk h2c: all requests to an
+// instance are multiplexed as streams over a few connections, without a handshake per connection and without
+// waiting for a free HTTP/1.1 connection.
+//
+// Everything else of the client (timeouts, SSL, proxy, header sizes, wiretap, compression and the HttpClientCustomizers,
+// e.g. the tracing of Sleuth) comes from spring.cloud.gateway.httpclient.*, like for the shared client.
+//
+// Settings of a service (gateway.upstream.services.<service>.*) fall back to gateway.upstream.*:
+//   protocol                      http11 or h2c (prior knowledge, the service needs server.http2.enabled=true)
+//   max-connections               per instance
+//   pending-acquire-max-count     requests waiting for a connection, then they fail
+//   pending-acquire-timeout
+//   max-idle-time / max-life-time / evict-in-background
+//
+// Replaces the NettyRoutingFilter of the gateway, which is disabled by
+// spring.cloud.gateway.global-filter.netty-routing.enabled=false (filter.* only switches GatewayFilterFactories).
+// The pools publish reactor.netty.connection.provider.* metrics (total, active, idle and pending connections)
+// by pool name (gateway-<service>) and instance.
+@Component
+@ConditionalOnProperty(name = "spring.cloud.gateway.global-filter.netty-routing.enabled", havingValue = "false")
+public class ServicePoolRoutingFilter extends NettyRoutingFilter implements DisposableBean {
+    private static final String PREFIX = "gateway.upstream.";
+
+    private final HttpClientProperties properties;
+    private final ServerProperties serverProperties;
+    private final List<HttpClientCustomizer> customizers;
+    private final Environment environment;
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> pools = new ConcurrentHashMap<>();
+
+    public ServicePoolRoutingFilter(HttpClient httpClient,
+                                    ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                    HttpClientProperties properties,
+                                    ServerProperties serverProperties,
+                                    ObjectProvider<HttpClientCustomizer> customizers,
+                                    Environment environment) {
+        super(httpClient, headersFilters, properties);
+        this.properties = properties;
+        this.serverProperties = serverProperties;
+        this.customizers = customizers.orderedStream().toList();
+        this.environment = environment;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        if (!"lb".equals(route.getUri().getScheme()) || route.getUri().getHost() == null){
+            return super.getHttpClient(route, exchange);
+        }
+        String service = route.getUri().getHost();
+        HttpClient client = clients.get(service);
+        if (client == null){
+            client = clients.computeIfAbsent(service, this::create);
+        }
+        Object connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+        return connectTimeout == null
+                ? client
+                : client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Integer.parseInt(connectTimeout.toString()));
+    }
+
+    private HttpClient create(String service) {
+        ConnectionProvider pool = ConnectionProvider.builder("gateway-" + service)
+                .maxConnections(setting(service, "max-connections", Integer.class, 500))
+                .pendingAcquireMaxCount(setting(service, "pending-acquire-max-count", Integer.class, 1000))
+                .pendingAcquireTimeout(setting(service, "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5)))
+                .maxIdleTime(setting(service, "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+                .maxLifeTime(setting(service, "max-life-time", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(setting(service, "evict-in-background", Duration.class, Duration.ofSeconds(30)))
+                .metrics(true)
+                .build();
+        pools.put(service, pool);
+
+        HttpClient client = new ServiceHttpClientFactory(properties, serverProperties, customizers, pool).create();
+        String protocol = setting(service, "protocol", String.class, "http11");
+        return "h2c".equalsIgnoreCase(protocol)
+                ? client.protocol(HttpProtocol.H2C)
+                : client;
+    }
+
+    private <T> T setting(String service, String name, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PREFIX + "services." + service + '.' + name, type);
+        return value != null ? value : environment.getProperty(PREFIX + name, type, defaultValue);
+    }
+
+    @Override
+    public void destroy() {
+        pools.values().forEach(ConnectionProvider::dispose);
+    }
+
+    // The HttpClientFactory of the gateway, only with the pool of the service
+    private static class ServiceHttpClientFactory extends HttpClientFactory {
+        private final ConnectionProvider pool;
+
+        ServiceHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                                 List<HttpClientCustomizer> customizers, ConnectionProvider pool) {
+            super(properties, serverProperties, new ArrayList<>(customizers));
+            this.pool = pool;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return pool;
+        }
+
+        HttpClient create() {
+            return createInstance();
+        }
+    }
+}
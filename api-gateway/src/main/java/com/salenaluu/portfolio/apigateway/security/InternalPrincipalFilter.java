@@ -0,0 +1,108 @@
+package com.salenaluu.portfolio.apigateway.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
+// The gateway validates the token of the client once and relays who the caller is as a short-lived,
+// HMAC-signed JWT in the X-Internal-Principal header (sub, email, groups, scope).
+// Services with security.token-validation=relay only trust this header, they don't validate the token again.
+@Component
+public class InternalPrincipalFilter implements GlobalFilter, Ordered {
+    public static final String HEADER = "X-Internal-Principal";
+    public static final String ISSUER = "api-gateway";
+
+    private final boolean enabled;
+    private final Duration timeToLive;
+    private final JWSSigner signer;
+
+    public InternalPrincipalFilter(@Value("${security.internal-principal.enabled:false}") boolean enabled,
+                                   @Value("${security.internal-principal.secret:}") String secret,
+                                   @Value("${security.internal-principal.ttl:30s}") Duration timeToLive) throws JOSEException {
+        this.enabled = enabled;
+        this.timeToLive = timeToLive;
+        // HS256 needs a secret of at least 256 bits, MACSigner refuses shorter ones
+        this.signer = enabled ? new MACSigner(secret.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // Never pass on a header, the client made up by itself
+        ServerWebExchange stripped = exchange.mutate()
+                .request(request -> request.headers(headers -> headers.remove(HEADER)))
+                .build();
+        if (!enabled){
+            return chain.filter(stripped);
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(this::sign)
+                .map(principal -> stripped.mutate()
+                        .request(request -> request.header(HEADER, principal))
+                        .build())
+                .defaultIfEmpty(stripped)
+                .flatMap(chain::filter);
+    }
+
+    private String sign(Authentication authentication) {
+        Map<String, Object> claims = claimsOf(authentication);
+        Instant now = Instant.now();
+        JWTClaimsSet.Builder principal = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(claims.getOrDefault("sub", authentication.getName()).toString())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(timeToLive)));
+        for (String claim : new String[]{"email", "groups", "scope", "scp"}) {
+            if (claims.containsKey(claim)){
+                principal.claim(claim, claims.get(claim));
+            }
+        }
+
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), principal.build());
+            jwt.sign(signer);
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Couldn't sign the internal principal", e);
+        }
+    }
+
+    // A bearer token (resource server) or the user of the session (oauth2Login)
+    private static Map<String, Object> claimsOf(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwt){
+            return jwt.getToken().getClaims();
+        }
+        if (authentication.getPrincipal() instanceof OAuth2AuthenticatedPrincipal principal){
+            return principal.getAttributes();
+        }
+        return Map.of();
+    }
+
+    // Runs early (right after the LoggingFilter), so no other filter sees the header of the client
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -0,0 +1,90 @@
+package com.salenaluu.portfolio.apigateway.utils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Access log of the gateway. The event loops only decide about sampling and hand the record over to the ring buffer,
+// a background thread formats and writes it. Errors and slow requests are always logged, the others are sampled.
+// If the appender can't keep up, records are dropped (and counted), but the event loop never waits.
+@Component
+public class AccessLog implements MeterBinder {
+    private final Logger logger = LoggerFactory.getLogger("access-log");
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final AccessLogRingBuffer<AccessLogRecord> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread appender;
+    private volatile boolean running = true;
+
+    public AccessLog(@Value("${gateway.access-log.sample-rate:1.0}") double sampleRate,
+                     @Value("${gateway.access-log.slow-threshold:1s}") Duration slowThreshold,
+                     @Value("${gateway.access-log.buffer-size:8192}") int bufferSize) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.buffer = new AccessLogRingBuffer<>(bufferSize);
+        this.appender = new Thread(this::append, "access-log-appender");
+        this.appender.setDaemon(true);
+        this.appender.start();
+    }
+
+    boolean isSampled(int status, long latencyNanos) {
+        return status >= 500
+                || latencyNanos >= slowThresholdNanos
+                || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    void log(AccessLogRecord accessLogRecord) {
+        if (!buffer.offer(accessLogRecord)){
+            dropped.increment();
+        }
+    }
+
+    private void append() {
+        while (running) {
+            AccessLogRecord accessLogRecord = buffer.poll();
+            if (accessLogRecord == null){
+                // Parking instead of waking up the appender on every record, that would cost the event loop a syscall
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            write(accessLogRecord);
+        }
+        for (AccessLogRecord rest = buffer.poll(); rest != null; rest = buffer.poll()) {
+            write(rest);
+        }
+    }
+
+    private void write(AccessLogRecord accessLogRecord) {
+        if (accessLogRecord.status() >= 500){
+            logger.warn(accessLogRecord.format());
+        } else {
+            logger.info(accessLogRecord.format());
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        appender.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.access-log.dropped", dropped, LongAdder::sum)
+                .description("Access log records dropped, because the buffer was full")
+                .register(registry);
+    }
+}
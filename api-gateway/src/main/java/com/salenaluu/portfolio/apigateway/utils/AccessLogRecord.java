@@ -0,0 +1,23 @@
+package com.salenaluu.portfolio.apigateway.utils;
+
+// One request through the gateway, formatted by the appender thread (not on the event loop)
+record AccessLogRecord(long timestamp,
+                       String method,
+                       String path,
+                       String routeId,
+                       String upstream,
+                       int status,
+                       long bytes,
+                       long latencyNanos) {
+
+    String format() {
+        return "method=" + method
+                + " path=\"" + path.replace("\"", "\\\"") + '"'
+                + " route=" + routeId
+                + " upstream=" + upstream
+                + " status=" + status
+                + " bytes=" + bytes
+                + " latency_ns=" + latencyNanos
+                + " timestamp=" + timestamp;
+    }
+}
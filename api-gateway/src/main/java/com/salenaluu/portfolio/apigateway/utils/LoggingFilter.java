@@ -1,20 +1,99 @@
 package com.salenaluu.portfolio.apigateway.utils;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+// Measures every request and hands a (sampled) record to the AccessLog, nothing is written on the event loop
 @Component
-public class LoggingFilter implements GlobalFilter {
-    private final Logger logger = LoggerFactory.getLogger(LoggingFilter.class);
+@RequiredArgsConstructor
+public class LoggingFilter implements GlobalFilter, Ordered {
+    private final AccessLog accessLog;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        logger.info("Path of the request received -> {}",exchange.getRequest().getPath());
-        return chain.filter(exchange);
+        long started = System.nanoTime();
+        AtomicLong bytes = new AtomicLong();
+        ServerWebExchange counted = exchange.mutate()
+                .response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return super.writeWith(Flux.from(body)
+                                .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+                    }
+
+                    @Override
+                    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                        return super.writeAndFlushWith(Flux.from(body)
+                                .map(part -> Flux.from(part)
+                                        .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))));
+                    }
+                })
+                .build();
+
+        return chain.filter(counted)
+                .doFinally(signal -> {
+                    long latencyNanos = System.nanoTime() - started;
+                    int status = statusOf(counted.getResponse(), signal);
+                    if (accessLog.isSampled(status, latencyNanos)){
+                        accessLog.log(new AccessLogRecord(
+                                System.currentTimeMillis(),
+                                exchange.getRequest().getMethodValue(),
+                                exchange.getRequest().getPath().value(),
+                                routeIdOf(exchange),
+                                upstreamOf(exchange),
+                                status,
+                                bytes.get(),
+                                latencyNanos));
+                    }
+                });
+    }
+
+    // An error, which the error handler maps later, counts as 500, a request the client gave up as 499
+    public static int statusOf(ServerHttpResponse response, SignalType signal) {
+        if (!response.isCommitted()){
+            if (signal == SignalType.ON_ERROR){
+                return 500;
+            }
+            if (signal == SignalType.CANCEL){
+                return 499;
+            }
+        }
+        Integer status = response.getRawStatusCode();
+        return status == null ? 200 : status;
+    }
+
+    private static String routeIdOf(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        return route == null ? "-" : route.getId();
+    }
+
+    // After the load balancer, the URL points to the chosen instance
+    private static String upstreamOf(ServerWebExchange exchange) {
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        return url == null ? "-" : url.getHost() + ":" + url.getPort();
+    }
+
+    // Outermost filter, so the latency covers all other gateway filters
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
     }
 }
@@ -0,0 +1,146 @@
+package com.salenaluu.portfolio.apigateway.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+// RED metrics per route and upstream instance:
+//   gateway.route.requests  timer (rate, error rate by outcome, latency histogram and percentiles)
+//   gateway.route.in-flight gauge per route
+// The meters are created once and looked up by the route id and instance id, which the gateway already holds,
+// so a request doesn't build tags or keys. Recording goes into the HdrHistogram based recorders of Micrometer.
+// The timers of an instance, which got no request for gateway.metrics.instance-idle-timeout (it deregistered or was
+// replaced), are removed from the registry, so instances coming and going don't pile up meters.
+@Component
+public class RouteMetricsFilter implements GlobalFilter, Ordered {
+    private static final String[] OUTCOMES = {"SUCCESS", "CLIENT_ERROR", "SERVER_ERROR"};
+
+    private final MeterRegistry registry;
+    private final double[] percentiles;
+    private final boolean percentileHistogram;
+    private final Duration maximumExpectedLatency;
+    private final Duration instanceIdleTimeout;
+    private final Map<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+    public RouteMetricsFilter(MeterRegistry registry,
+                              @Value("${gateway.metrics.percentiles:0.5,0.95,0.99,0.999}") double[] percentiles,
+                              @Value("${gateway.metrics.percentile-histogram:true}") boolean percentileHistogram,
+                              @Value("${gateway.metrics.maximum-expected-latency:30s}") Duration maximumExpectedLatency,
+                              @Value("${gateway.metrics.instance-idle-timeout:10m}") Duration instanceIdleTimeout) {
+        this.registry = registry;
+        this.percentiles = percentiles;
+        this.percentileHistogram = percentileHistogram;
+        this.maximumExpectedLatency = maximumExpectedLatency;
+        this.instanceIdleTimeout = instanceIdleTimeout;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (route == null){
+            return chain.filter(exchange);
+        }
+        RouteMeters meters = routes.get(route.getId());
+        if (meters == null){
+            meters = routes.computeIfAbsent(route.getId(), RouteMeters::new);
+        }
+
+        RouteMeters routeMeters = meters;
+        routeMeters.inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    routeMeters.inFlight.decrementAndGet();
+                    int status = LoggingFilter.statusOf(exchange.getResponse(), signal);
+                    routeMeters.timer(instanceOf(exchange), status)
+                            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                });
+    }
+
+    // The instance, the load balancer has chosen, otherwise the host of a static route
+    private static String instanceOf(ServerWebExchange exchange) {
+        Response<ServiceInstance> chosen = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (chosen != null && chosen.hasServer() && chosen.getServer().getInstanceId() != null){
+            return chosen.getServer().getInstanceId();
+        }
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        return url == null || url.getHost() == null ? "none" : url.getHost();
+    }
+
+    // Right after the LoggingFilter and the InternalPrincipalFilter, the latency covers the other gateway filters
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 2;
+    }
+
+    private class RouteMeters {
+        private final String routeId;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // one timer per outcome and instance
+        private final Cache<String, Timer[]> timersByInstance;
+
+        RouteMeters(String routeId) {
+            this.routeId = routeId;
+            // The eviction listener runs within the eviction, a request of the instance can't get the removed timers
+            this.timersByInstance = Caffeine.newBuilder()
+                    .expireAfterAccess(instanceIdleTimeout)
+                    .scheduler(Scheduler.systemScheduler())
+                    .executor(Runnable::run)
+                    .<String, Timer[]>evictionListener((instance, timers, cause) -> {
+                        for (Timer timer : timers) {
+                            registry.remove(timer);
+                        }
+                    })
+                    .build();
+            Gauge.builder("gateway.route.in-flight", inFlight, AtomicInteger::get)
+                    .description("Requests of the route, which are waiting for their response")
+                    .tag("route", routeId)
+                    .register(registry);
+        }
+
+        Timer timer(String instance, int status) {
+            Timer[] timers = timersByInstance.get(instance, this::timers);
+            return timers[status >= 500 ? 2 : status >= 400 ? 1 : 0];
+        }
+
+        private Timer[] timers(String instance) {
+            Timer[] timers = new Timer[OUTCOMES.length];
+            for (int i = 0; i < OUTCOMES.length; i++) {
+                timers[i] = Timer.builder("gateway.route.requests")
+                        .description("Requests through the gateway by route, upstream instance and outcome")
+                        .tag("route", routeId)
+                        .tag("instance", instance)
+                        .tag("outcome", OUTCOMES[i])
+                        .publishPercentiles(percentiles)
+                        .publishPercentileHistogram(percentileHistogram)
+                        .maximumExpectedValue(maximumExpectedLatency)
+                        .register(registry);
+            }
+            return timers;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import com.salenaluu.portfolio.apigateway.ratelimit.LocalRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RequestRateLimiterGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Thundering herd: a burst of readers asks for the same, just published BlogPost at the same moment
+class RequestCoalescingGatewayFilterFactoryTest {
+    private static final int READERS = 500;
+    private static final String BLOG_POST = "{\"title\":\"Scooby is Back!\",\"content\":\"No way! And shaggy too ?\"}";
+
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    // a blog-post, which needs 200ms for its answer
+    GatewayFilterChain upstream = exchange -> {
+        upstreamCalls.incrementAndGet();
+        return Mono.delay(Duration.ofMillis(200))
+                .then(Mono.defer(() -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.OK);
+                    exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    exchange.getResponse().getHeaders().setETag("\"1\"");
+                    return exchange.getResponse().writeWith(Mono.just(exchange.getResponse()
+                            .bufferFactory()
+                            .wrap(BLOG_POST.getBytes(StandardCharsets.UTF_8))));
+                }));
+    };
+
+    GatewayFilter requestCoalescing = new RequestCoalescingGatewayFilterFactory(new SimpleMeterRegistry())
+            .apply(new RequestCoalescingGatewayFilterFactory.Config());
+
+    @Test
+    @DisplayName("should send a burst of identical GETs upstream only once and give every reader the response")
+    void should_collapse_thundering_herd_into_one_upstream_call() {
+        List<MockServerWebExchange> readers = Flux.range(0, READERS)
+                .map(reader -> MockServerWebExchange.from(MockServerHttpRequest
+                        .get("/api/v1/blogpost/find?title={title}&creatorEmail={email}", "Scooby is Back!", "test@example.com")))
+                .collectList()
+                .block();
+
+        Flux.fromIterable(readers)
+                .flatMap(exchange -> requestCoalescing.filter(exchange, upstream), READERS)
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(upstreamCalls).hasValue(1);
+        for (MockServerWebExchange exchange : readers) {
+            assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(BLOG_POST);
+        }
+    }
+
+    @Test
+    @DisplayName("should give a follower the headers of the upstream response, but keep its own rate limit headers")
+    void should_keep_rate_limit_headers_of_follower() {
+        // 1 token per second, 5 at once, a bucket per caller
+        LocalRateLimiter rateLimiter = new LocalRateLimiter(mock(ConfigurationService.class), 1, 5, 1000, Duration.ofMinutes(1));
+        RequestRateLimiterGatewayFilterFactory.Config rateLimit = new RequestRateLimiterGatewayFilterFactory.Config();
+        rateLimit.setRouteId("BlogPostController");
+        GatewayFilter requestRateLimiter = new RequestRateLimiterGatewayFilterFactory(rateLimiter,
+                exchange -> Mono.just(exchange.getRequest().getHeaders().getFirst("X-Caller")))
+                .apply(rateLimit);
+        // shaggy has taken 2 tokens before
+        rateLimiter.isAllowed("BlogPostController", "shaggy").block();
+        rateLimiter.isAllowed("BlogPostController", "shaggy").block();
+
+        List<MockServerWebExchange> readers = Flux.just("scooby", "shaggy")
+                .map(caller -> MockServerWebExchange.from(MockServerHttpRequest
+                        .get("/api/v1/blogpost/find?title=a&creatorEmail=b")
+                        .header("X-Caller", caller)))
+                .collectList()
+                .block();
+        Flux.fromIterable(readers)
+                .flatMap(exchange -> requestRateLimiter.filter(exchange, rateLimited -> requestCoalescing.filter(rateLimited, upstream)))
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(upstreamCalls).hasValue(1);
+        MockServerWebExchange leader = readers.get(0);
+        MockServerWebExchange follower = readers.get(1);
+        assertThat(leader.getResponse().getHeaders().get(LocalRateLimiter.REMAINING_HEADER)).containsExactly("4");
+        assertThat(follower.getResponse().getHeaders().get(LocalRateLimiter.REMAINING_HEADER)).containsExactly("2");
+        assertThat(follower.getResponse().getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(follower.getResponse().getBodyAsString().block()).isEqualTo(BLOG_POST);
+    }
+
+    @Test
+    @DisplayName("should merge requests, which only differ in the order of their query parameters")
+    void should_normalize_query_parameters() {
+        Flux.just(
+                        "/api/v1/blogpost/find?title=a&creatorEmail=b",
+                        "/api/v1/blogpost/find?creatorEmail=b&title=a")
+                .map(uri -> MockServerWebExchange.from(MockServerHttpRequest.get(uri)))
+                .flatMap(exchange -> requestCoalescing.filter(exchange, upstream))
+                .blockLast(Duration.ofSeconds(10));
+
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should not merge different requests or requests, which arrive after the response")
+    void should_not_merge_different_or_later_requests() {
+        Flux.just(
+                        "/api/v1/blogpost/find?title=a&creatorEmail=b",
+                        "/api/v1/blogpost/find?title=c&creatorEmail=b")
+                .map(uri -> MockServerWebExchange.from(MockServerHttpRequest.get(uri)))
+                .flatMap(exchange -> requestCoalescing.filter(exchange, upstream))
+                .blockLast(Duration.ofSeconds(10));
+        requestCoalescing
+                .filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost/find?title=a&creatorEmail=b")), upstream)
+                .block(Duration.ofSeconds(10));
+
+        assertThat(upstreamCalls).hasValue(3);
+    }
+}
@@ -0,0 +1,129 @@
+package com.salenaluu.portfolio.apigateway.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheGatewayFilterFactoryTest {
+    private static final String BLOG_POST = "{\"title\":\"Scooby is Back!\",\"content\":\"No way! And shaggy too ?\"}";
+    private static final String UPDATED_BLOG_POST = "{\"title\":\"Scooby is Back!\",\"content\":\"Scrappy too!\"}";
+
+    // the If-None-Match of every request, which reached the blog-post
+    List<List<String>> upstreamCalls = new CopyOnWriteArrayList<>();
+    // holds the answers of the blog-post back, until it's opened
+    Sinks.Empty<Void> upstreamGate = Sinks.empty();
+    volatile String eTag = "\"1\"";
+    volatile String body = BLOG_POST;
+    volatile String cacheControl = "max-age=60";
+
+    // a blog-post, which answers an If-None-Match of the current ETag with 304
+    GatewayFilterChain upstream = exchange -> {
+        List<String> ifNoneMatch = exchange.getRequest().getHeaders().getIfNoneMatch();
+        upstreamCalls.add(ifNoneMatch);
+        Mono<Void> gate = upstreamCalls.size() == 1 ? Mono.empty() : upstreamGate.asMono();
+        return gate.then(Mono.defer(() -> {
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            headers.setETag(eTag);
+            headers.setCacheControl(cacheControl);
+            if (ifNoneMatch.contains(eTag)){
+                exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+                return exchange.getResponse().writeWith(Flux.empty());
+            }
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse()
+                    .bufferFactory()
+                    .wrap(body.getBytes(StandardCharsets.UTF_8))));
+        }));
+    };
+
+    GatewayFilter responseCache = new ResponseCacheGatewayFilterFactory(new ResponseCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64)))
+            .apply(new ResponseCacheGatewayFilterFactory.Config());
+
+    @Test
+    @DisplayName("should serve a fresh response from the cache, without calling the blog-post")
+    void should_serve_fresh_response_from_cache() {
+        MockServerWebExchange first = get();
+        MockServerWebExchange second = get();
+
+        assertThat(upstreamCalls).hasSize(1);
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getResponse().getHeaders().getETag()).isEqualTo(eTag);
+        assertThat(second.getResponse().getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo(first.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("should serve a stale response to every request, while only one revalidation waits for the blog-post")
+    void should_serve_stale_response_to_every_request_while_revalidating() {
+        cacheControl = "max-age=0";
+        get();
+
+        // the blog-post hasn't answered the revalidation yet, nobody waits for it
+        for (int i = 0; i < 3; i++) {
+            MockServerWebExchange stale = get();
+            assertThat(stale.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(stale.getResponse().getBodyAsString().block()).isEqualTo(BLOG_POST);
+        }
+
+        assertThat(upstreamCalls).hasSize(2);
+        assertThat(upstreamCalls.get(1)).containsExactly(eTag);
+    }
+
+    @Test
+    @DisplayName("should make a stale response fresh again, when the blog-post confirms it with 304")
+    void should_refresh_stale_response_on_not_modified() {
+        cacheControl = "max-age=0";
+        get();
+        get();
+
+        cacheControl = "max-age=60";
+        upstreamGate.tryEmitEmpty();
+        MockServerWebExchange fresh = get();
+
+        assertThat(upstreamCalls).hasSize(2);
+        assertThat(fresh.getResponse().getBodyAsString().block()).isEqualTo(BLOG_POST);
+    }
+
+    @Test
+    @DisplayName("should replace a stale response, when the blog-post answers the revalidation with a new one")
+    void should_replace_stale_response_on_change() {
+        cacheControl = "max-age=0";
+        get();
+        get();
+
+        eTag = "\"2\"";
+        body = UPDATED_BLOG_POST;
+        cacheControl = "max-age=60";
+        upstreamGate.tryEmitEmpty();
+        MockServerWebExchange changed = get();
+
+        assertThat(upstreamCalls).hasSize(2);
+        assertThat(changed.getResponse().getHeaders().getETag()).isEqualTo("\"2\"");
+        assertThat(changed.getResponse().getBodyAsString().block()).isEqualTo(UPDATED_BLOG_POST);
+    }
+
+    private MockServerWebExchange get() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/api/v1/blogpost/find?title={title}&creatorEmail={email}", "Scooby is Back!", "test@example.com"));
+        responseCache.filter(exchange, upstream).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+}
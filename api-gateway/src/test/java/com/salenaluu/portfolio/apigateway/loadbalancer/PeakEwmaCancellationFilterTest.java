@@ -0,0 +1,129 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerProperties;
+import org.springframework.cloud.gateway.config.GatewayLoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+class PeakEwmaCancellationFilterTest {
+    private static final ServiceInstance INSTANCE = new DefaultServiceInstance("blog-post-1", "blog-post", "blog-post-1", 8080, false);
+    private static final Route ROUTE = Route.async()
+            .id("BlogPostController")
+            .uri("lb://blog-post")
+            .predicate(exchange -> true)
+            .build();
+
+    PeakEwmaLoadBalancer peakEwma = new PeakEwmaLoadBalancer(new StaticListableBeanFactory(Map.of("instances",
+            new ServiceInstanceListSupplier() {
+                @Override
+                public String getServiceId() {
+                    return "blog-post";
+                }
+
+                @Override
+                public Flux<List<ServiceInstance>> get() {
+                    return Flux.just(List.of(INSTANCE));
+                }
+            }))
+            .getBeanProvider(ServiceInstanceListSupplier.class),
+            "blog-post", Duration.ofSeconds(1), Duration.ofSeconds(1), System::nanoTime);
+    LoadBalancerClientFactory clientFactory = clientFactory();
+
+    @Test
+    @DisplayName("should give back the outstanding request of an instance, when the request is cancelled")
+    void should_release_outstanding_request_on_cancel() {
+        // the upstream doesn't answer, until the request is cancelled (the client is gone, the hedge lost)
+        FilteringWebHandler gateway = gateway((exchange, chain) -> Mono.never());
+
+        List<Disposable> requests = List.of(
+                gateway.handle(exchange()).subscribe(),
+                gateway.handle(exchange()).subscribe(),
+                gateway.handle(exchange()).subscribe());
+        assertThat(peakEwma.getOutstanding(INSTANCE)).isEqualTo(3);
+
+        requests.forEach(Disposable::dispose);
+        assertThat(peakEwma.getOutstanding(INSTANCE)).isZero();
+    }
+
+    @Test
+    @DisplayName("should count the request as outstanding, until the instance answers")
+    void should_count_outstanding_request_until_response() {
+        FilteringWebHandler gateway = gateway((exchange, chain) -> {
+            assertThat(peakEwma.getOutstanding(INSTANCE)).isEqualTo(1);
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().setComplete();
+        });
+
+        gateway.handle(exchange()).block(Duration.ofSeconds(5));
+
+        assertThat(peakEwma.getOutstanding(INSTANCE)).isZero();
+    }
+
+    // the load balancer, this filter and the routing filter, ordered like in the gateway
+    private FilteringWebHandler gateway(GlobalFilter routing) {
+        return new FilteringWebHandler(List.of(
+                new ReactiveLoadBalancerClientFilter(clientFactory, new GatewayLoadBalancerProperties()),
+                new PeakEwmaCancellationFilter(clientFactory),
+                new RoutingFilter(routing)));
+    }
+
+    private LoadBalancerClientFactory clientFactory() {
+        LoadBalancerClientFactory clientFactory = mock(LoadBalancerClientFactory.class);
+        given(clientFactory.getInstance("blog-post", ReactorServiceInstanceLoadBalancer.class)).willReturn(peakEwma);
+        given(clientFactory.getInstance("blog-post", PeakEwmaLoadBalancer.class)).willReturn(peakEwma);
+        given(clientFactory.getInstances("blog-post", LoadBalancerLifecycle.class))
+                .willReturn(Map.<String, LoadBalancerLifecycle>of("peakEwmaLoadBalancer", peakEwma));
+        given(clientFactory.getProperties("blog-post")).willReturn(new LoadBalancerProperties());
+        return clientFactory;
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost"));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, ROUTE);
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create("lb://blog-post/api/v1/blogpost"));
+        return exchange;
+    }
+
+    private record RoutingFilter(GlobalFilter delegate) implements GlobalFilter, Ordered {
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return delegate.filter(exchange, chain);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.salenaluu.portfolio.apigateway.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Simulation in virtual time: 1000 requests per second to five blog-post instances, one of them answers in 200ms
+// instead of 10ms (GC pauses, a noisy neighbour)
+@Slf4j
+class PeakEwmaLoadBalancerTest {
+    private static final int REQUESTS = 20_000;
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final List<ServiceInstance> INSTANCES = List.of(
+            instance("blog-post-1"), instance("blog-post-2"), instance("blog-post-3"), instance("blog-post-4"),
+            instance("blog-post-slow"));
+
+    long now;
+    // the instances, which are registered right now
+    volatile List<ServiceInstance> registered = INSTANCES;
+    ObjectProvider<ServiceInstanceListSupplier> instances = new StaticListableBeanFactory(Map.of("instances",
+            new ServiceInstanceListSupplier() {
+                @Override
+                public String getServiceId() {
+                    return "blog-post";
+                }
+
+                @Override
+                public Flux<List<ServiceInstance>> get() {
+                    return Flux.just(registered);
+                }
+            }))
+            .getBeanProvider(ServiceInstanceListSupplier.class);
+    PeakEwmaLoadBalancer peakEwma = new PeakEwmaLoadBalancer(
+            instances, "blog-post", Duration.ofSeconds(1), Duration.ofSeconds(1), () -> now);
+
+    @Test
+    @DisplayName("should keep the p99 of the fast instances, when one instance is slow")
+    void should_avoid_slow_instance() {
+        Result roundRobin = simulate(new RoundRobinLoadBalancer(instances, "blog-post"), Map.of());
+        Result latencyAware = simulate(peakEwma, Map.of());
+
+        log.info("p99: round robin {}ms, peak EWMA {}ms (requests per instance {})",
+                roundRobin.p99(), latencyAware.p99(), latencyAware.requests);
+        assertThat(roundRobin.p99()).isGreaterThanOrEqualTo(100);
+        assertThat(latencyAware.p99()).isLessThan(20);
+        assertThat(latencyAware.requests.get("blog-post-slow")).isLessThan(REQUESTS / 100);
+    }
+
+    @Test
+    @DisplayName("should avoid an instance, which fails fast")
+    void should_avoid_failing_instance() {
+        Result latencyAware = simulate(peakEwma, Map.of("blog-post-slow", CompletionContext.Status.FAILED));
+
+        assertThat(latencyAware.requests.get("blog-post-slow")).isLessThan(REQUESTS / 100);
+    }
+
+    @Test
+    @DisplayName("should forget the latency of an instance, which isn't registered anymore")
+    void should_forget_gone_instance() {
+        simulate(peakEwma, Map.of());
+        assertThat(peakEwma.knows(instance("blog-post-slow"))).isTrue();
+
+        // blog-post-slow deregistered
+        registered = INSTANCES.subList(0, 4);
+        peakEwma.choose(new DefaultRequest<>(new RequestDataContext())).block();
+
+        assertThat(peakEwma.knows(instance("blog-post-slow"))).isFalse();
+        assertThat(peakEwma.knows(instance("blog-post-1"))).isTrue();
+    }
+
+    private Result simulate(ReactorServiceInstanceLoadBalancer loadBalancer, Map<String, CompletionContext.Status> outcomes) {
+        Random random = new Random(42);
+        Result result = new Result();
+        // requests in flight by the time of their response
+        PriorityQueue<InFlight> inFlight = new PriorityQueue<>((a, b) -> Long.compare(a.completesAt, b.completesAt));
+        for (int i = 0; i < REQUESTS; i++) {
+            now = i * INTERVAL_NANOS;
+            while (!inFlight.isEmpty() && inFlight.peek().completesAt <= now) {
+                complete(loadBalancer, inFlight.poll());
+            }
+
+            Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext());
+            Response<ServiceInstance> response = loadBalancer.choose(request).block();
+            String instanceId = response.getServer().getInstanceId();
+            CompletionContext.Status outcome = outcomes.getOrDefault(instanceId, CompletionContext.Status.SUCCESS);
+            long serviceTime = TimeUnit.MILLISECONDS.toNanos(outcome == CompletionContext.Status.FAILED ? 1
+                    : instanceId.endsWith("slow") ? 200 : 10);
+            long latency = (long) (serviceTime * (0.5 + random.nextDouble()));
+
+            if (loadBalancer instanceof PeakEwmaLoadBalancer lifecycle){
+                lifecycle.onStartRequest(request, response);
+            }
+            inFlight.add(new InFlight(now + latency, request, response, outcome));
+            result.requests.merge(instanceId, 1, Integer::sum);
+            result.latencies.add(TimeUnit.NANOSECONDS.toMillis(latency));
+        }
+        return result;
+    }
+
+    private void complete(ReactorServiceInstanceLoadBalancer loadBalancer, InFlight completed) {
+        now = completed.completesAt;
+        if (loadBalancer instanceof PeakEwmaLoadBalancer lifecycle){
+            lifecycle.onComplete(new CompletionContext<>(completed.outcome, completed.request, completed.response));
+        }
+    }
+
+    private static ServiceInstance instance(String instanceId) {
+        return new DefaultServiceInstance(instanceId, "blog-post", instanceId, 8080, false);
+    }
+
+    private record InFlight(long completesAt, Request<RequestDataContext> request, Response<ServiceInstance> response,
+                            CompletionContext.Status outcome) {
+    }
+
+    private static class Result {
+        private final Map<String, Integer> requests = new HashMap<>();
+        private final List<Long> latencies = new ArrayList<>();
+
+        long p99() {
+            Collections.sort(latencies);
+            return latencies.get(latencies.size() * 99 / 100);
+        }
+    }
+}
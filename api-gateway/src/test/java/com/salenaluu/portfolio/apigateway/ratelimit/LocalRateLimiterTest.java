@@ -0,0 +1,65 @@
+package com.salenaluu.portfolio.apigateway.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class LocalRateLimiterTest {
+
+    // 1 token per second, 5 at once
+    LocalRateLimiter rateLimiter = new LocalRateLimiter(mock(ConfigurationService.class), 1, 5, 1000, Duration.ofMinutes(1));
+
+    @Test
+    @DisplayName("should allow the burst capacity and deny the next request with 429 headers")
+    void should_allow_burst_then_deny() {
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            RateLimiter.Response response = rateLimiter.isAllowed("BlogPostController", "sub:scooby").block();
+            assertThat(response.isAllowed()).isTrue();
+            assertThat(response.getHeaders()).containsEntry(LocalRateLimiter.REMAINING_HEADER, Integer.toString(remaining));
+        }
+
+        RateLimiter.Response denied = rateLimiter.isAllowed("BlogPostController", "sub:scooby").block();
+        assertThat(denied.isAllowed()).isFalse();
+        assertThat(denied.getHeaders())
+                .containsEntry(LocalRateLimiter.REMAINING_HEADER, "0")
+                .containsEntry(LocalRateLimiter.BURST_CAPACITY_HEADER, "5")
+                .containsEntry(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    @Test
+    @DisplayName("should keep a bucket per key and route")
+    void should_keep_bucket_per_key_and_route() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.isAllowed("BlogPostController", "sub:scooby").block();
+        }
+
+        assertThat(rateLimiter.isAllowed("BlogPostController", "sub:shaggy").block().isAllowed()).isTrue();
+        assertThat(rateLimiter.isAllowed("NotificationController", "sub:scooby").block().isAllowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("should never hand out more tokens than the bucket holds, when requests race for them")
+    void should_not_overspend_under_contention() {
+        List<Boolean> allowed = Flux.range(0, 1000)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> rateLimiter.isAllowed("BlogPostController", "ip:10.0.0.1"))
+                .map(RateLimiter.Response::isAllowed)
+                .sequential()
+                .collectList()
+                .block();
+
+        // the burst plus at most one token, which was replenished while the test ran
+        assertThat(allowed.stream().filter(Boolean::booleanValue).count()).isBetween(5L, 6L);
+    }
+}
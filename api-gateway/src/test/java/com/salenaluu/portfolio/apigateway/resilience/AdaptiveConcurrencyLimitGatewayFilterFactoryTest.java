@@ -0,0 +1,173 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+@Slf4j
+class AdaptiveConcurrencyLimitGatewayFilterFactoryTest {
+    private static final int CLIENTS = 64;
+    private static final int WORKERS = 4;
+    private static final Route ROUTE = Route.async()
+            .id("BlogPostController")
+            .uri("lb://blog-post")
+            .predicate(exchange -> true)
+            .build();
+
+    volatile long serviceTimeMillis = 10;
+    volatile HttpStatus backendStatus = HttpStatus.OK;
+    AtomicInteger backendInFlight = new AtomicInteger();
+    AtomicInteger backendCalls = new AtomicInteger();
+
+    // blog-post with 4 workers: it needs serviceTime for a request, more requests at a time wait for a worker
+    GatewayFilterChain backend = exchange -> Mono.defer(() -> {
+        backendCalls.incrementAndGet();
+        int inFlight = backendInFlight.incrementAndGet();
+        long latencyMillis = serviceTimeMillis * Math.max(WORKERS, inFlight) / WORKERS;
+        // the worker is free, before the client sees the response and sends its next request
+        return Mono.delay(Duration.ofMillis(latencyMillis))
+                .doOnCancel(backendInFlight::decrementAndGet)
+                .then(Mono.defer(() -> {
+                    backendInFlight.decrementAndGet();
+                    exchange.getResponse().setStatusCode(backendStatus);
+                    return exchange.getResponse().setComplete();
+                }));
+    });
+
+    @Test
+    @DisplayName("should keep the latency bounded and shed the excess with 503, when the backend slows down")
+    void should_bound_latency_of_slowed_backend() {
+        GatewayFilter unlimited = (exchange, chain) -> chain.filter(exchange);
+        Load withoutLimit = run(unlimited);
+        Load withLimit = run(filter(CircuitBreakerConfig.ofDefaults()));
+
+        log.info("slowed backend p99: without limit {}ms, with limit {}ms ({} of {} requests shed)",
+                withoutLimit.p99(), withLimit.p99(), withLimit.shed, withLimit.shed + withLimit.latencies.size());
+        // 64 clients queue up for 16 rounds of 50ms without the limit
+        assertThat(withoutLimit.p99()).isGreaterThan(600);
+        assertThat(withLimit.p99()).isLessThan(withoutLimit.p99() / 2);
+        assertThat(withLimit.shed).isPositive();
+    }
+
+    @Test
+    @DisplayName("should open the circuit after failures and answer with 503 without calling the backend")
+    void should_open_circuit_on_failures() {
+        backendStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+        GatewayFilter filter = filter(CircuitBreakerConfig.custom()
+                .slidingWindowSize(10)
+                .minimumNumberOfCalls(10)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofSeconds(10))
+                .build());
+
+        for (int i = 0; i < 10; i++) {
+            MockServerWebExchange exchange = exchange();
+            filter.filter(exchange, backend).block(Duration.ofSeconds(5));
+            assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        MockServerWebExchange exchange = exchange();
+        filter.filter(exchange, backend).block(Duration.ofSeconds(5));
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+        assertThat(backendCalls).hasValue(10);
+    }
+
+    @Test
+    @DisplayName("should give the slot back, when the client cancels its request")
+    void should_release_on_cancel() {
+        GatewayFilter filter = filter(CircuitBreakerConfig.ofDefaults());
+        GatewayFilterChain hanging = exchange -> Mono.never();
+        for (int i = 0; i < 10; i++) {
+            filter.filter(exchange(), hanging).subscribe().dispose();
+        }
+
+        MockServerWebExchange exchange = exchange();
+        filter.filter(exchange, backend).block(Duration.ofSeconds(5));
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private GatewayFilter filter(CircuitBreakerConfig circuitBreaker) {
+        return new AdaptiveConcurrencyLimitGatewayFilterFactory(new SimpleMeterRegistry(), CircuitBreakerRegistry.of(circuitBreaker),
+                20, 3, 1000, 0.25, Duration.ofMillis(20), Duration.ofMillis(500), 10)
+                .apply(new AdaptiveConcurrencyLimitGatewayFilterFactory.Config());
+    }
+
+    // 64 clients send one request after the other: 0.5s with a service time of 10ms, then 1.5s with 50ms
+    private Load run(GatewayFilter filter) {
+        serviceTimeMillis = 10;
+        load(filter, Duration.ofMillis(500), new Load());
+        serviceTimeMillis = 50;
+        return load(filter, Duration.ofMillis(1500), new Load());
+    }
+
+    private Load load(GatewayFilter filter, Duration duration, Load load) {
+        long end = System.nanoTime() + duration.toNanos();
+        Flux.range(0, CLIENTS)
+                .flatMap(client -> Mono
+                        .defer(() -> {
+                            MockServerWebExchange exchange = exchange();
+                            long started = System.nanoTime();
+                            return filter.filter(exchange, backend)
+                                    .then(Mono.defer(() -> {
+                                        if (exchange.getResponse().getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE){
+                                            load.shed();
+                                            // the client waits, as Retry-After tells it, before it tries again
+                                            long retryAfter = Long.parseLong(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+                                            return Mono.delay(Duration.ofSeconds(retryAfter)).then();
+                                        }
+                                        load.latency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                                        return Mono.empty();
+                                    }));
+                        })
+                        .repeat(() -> System.nanoTime() < end), CLIENTS)
+                .blockLast(Duration.ofSeconds(30));
+        return load;
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost"));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, ROUTE);
+        return exchange;
+    }
+
+    private static class Load {
+        private final List<Long> latencies = new ArrayList<>();
+        private int shed;
+
+        synchronized void latency(long millis) {
+            latencies.add(millis);
+        }
+
+        synchronized void shed() {
+            shed++;
+        }
+
+        synchronized long p99() {
+            Collections.sort(latencies);
+            return latencies.get(latencies.size() * 99 / 100);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.salenaluu.portfolio.apigateway.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgeGatewayFilterFactoryTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    GatewayFilter hedge = new HedgeGatewayFilterFactory(registry)
+            .apply(new HedgeGatewayFilterFactory.Config());
+
+    volatile long firstAttemptMillis = 10;
+    AtomicInteger cancelledUpstream = new AtomicInteger();
+    // blog-post instances: the first attempt takes firstAttemptMillis, the hedge goes to a fast instance
+    GatewayFilterChain upstream = exchange -> {
+        boolean hedged = exchange.getAttribute(HedgeGatewayFilterFactory.HEDGED_ATTR) != null;
+        return Mono.delay(Duration.ofMillis(hedged ? 10 : firstAttemptMillis))
+                .then(Mono.defer(() -> {
+                    exchange.getResponse().setStatusCode(HttpStatus.OK);
+                    return exchange.getResponse().writeWith(Mono.just(exchange.getResponse()
+                            .bufferFactory()
+                            .wrap((hedged ? "hedge" : "first").getBytes(StandardCharsets.UTF_8))));
+                }))
+                .doOnCancel(cancelledUpstream::incrementAndGet);
+    };
+
+    // the route learns its p95 (about 10ms) from the first 128 requests
+    @BeforeEach
+    void warmUp() {
+        Flux.range(0, 256)
+                .flatMap(request -> hedge.filter(exchange(), upstream), 32)
+                .blockLast(Duration.ofSeconds(10));
+        cancelledUpstream.set(0);
+    }
+
+    @Test
+    @DisplayName("should answer from the hedge and cancel the first attempt, when it's slower than the p95")
+    void should_hedge_slow_request() {
+        firstAttemptMillis = 2000;
+        double won = count("won");
+
+        MockServerWebExchange exchange = exchange();
+        long started = System.nanoTime();
+        hedge.filter(exchange, upstream).block(Duration.ofSeconds(5));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(500));
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("hedge");
+        assertThat(exchange.getAttributes()).containsKey(HedgeGatewayFilterFactory.HEDGED_ATTR);
+        assertThat(count("won") - won).isEqualTo(1);
+        assertThat(cancelledUpstream).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should not send more hedges than the budget allows")
+    void should_respect_budget() {
+        firstAttemptMillis = 300;
+        double sent = count("sent");
+
+        Flux.range(0, 100)
+                .flatMap(request -> hedge.filter(exchange(), upstream), 100)
+                .blockLast(Duration.ofSeconds(10));
+
+        // at most 10 saved up and 10% of the 100 requests
+        assertThat(count("sent") - sent).isLessThanOrEqualTo(20);
+        assertThat(count("over-budget")).isPositive();
+    }
+
+    private double count(String event) {
+        return registry.get("gateway.hedge.requests").tag("event", event).counter().count();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost"));
+    }
+}
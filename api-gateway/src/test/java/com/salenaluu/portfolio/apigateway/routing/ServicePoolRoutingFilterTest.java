@@ -0,0 +1,126 @@
+package com.salenaluu.portfolio.apigateway.routing;
+
+import io.netty.channel.ChannelOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.cloud.gateway.config.GatewayAutoConfiguration;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.ResolvableType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServicePoolRoutingFilterTest {
+    private static final Route BLOG_POST = Route.async()
+            .id("BlogPostController")
+            .uri("lb://blog-post")
+            .predicate(exchange -> true)
+            .build();
+    private static final Route NOTIFICATION = Route.async()
+            .id("NotificationController")
+            .uri("lb://notification")
+            .predicate(exchange -> true)
+            .build();
+
+    AtomicInteger customized = new AtomicInteger();
+    ServicePoolRoutingFilter routingFilter = routingFilter();
+
+    @AfterEach
+    void tearDown() {
+        routingFilter.destroy();
+    }
+
+    @Test
+    @DisplayName("should give the client of a service the httpclient settings and customizers of the gateway")
+    void should_apply_gateway_settings_to_service_client() {
+        HttpClient client = routingFilter.getHttpClient(BLOG_POST, exchange());
+
+        assertThat(customized).hasValue(1);
+        assertThat(client.configuration().decoder().maxHeaderSize()).isEqualTo(32 * 1024);
+        assertThat(client.configuration().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS)).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("should talk h2c only to the services, which are switched to it")
+    void should_switch_protocol_per_service() {
+        HttpClient blogPost = routingFilter.getHttpClient(BLOG_POST, exchange());
+        HttpClient notification = routingFilter.getHttpClient(NOTIFICATION, exchange());
+
+        assertThat(blogPost.configuration().protocols()).containsExactly(HttpProtocol.H2C);
+        assertThat(notification.configuration().protocols()).containsExactly(HttpProtocol.HTTP11);
+        assertThat(routingFilter.getHttpClient(BLOG_POST, exchange())).isSameAs(blogPost);
+        assertThat(customized).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("should replace the NettyRoutingFilter of the gateway, when it's switched off")
+    void should_replace_netty_routing_filter() {
+        // both would route the exchange at LOWEST_PRECEDENCE
+        gateway()
+                .withPropertyValues("spring.cloud.gateway.global-filter.netty-routing.enabled=false")
+                .run(context -> assertThat(context)
+                        .hasNotFailed()
+                        .getBeans(NettyRoutingFilter.class)
+                        .hasSize(1)
+                        .allSatisfy((name, filter) -> assertThat(filter).isInstanceOf(ServicePoolRoutingFilter.class)));
+    }
+
+    @Test
+    @DisplayName("should keep the NettyRoutingFilter of the gateway, when it isn't switched off")
+    void should_keep_netty_routing_filter_by_default() {
+        gateway().run(context -> assertThat(context)
+                .hasNotFailed()
+                .getBeans(NettyRoutingFilter.class)
+                .hasSize(1)
+                .allSatisfy((name, filter) -> assertThat(filter).isNotInstanceOf(ServicePoolRoutingFilter.class)));
+    }
+
+    private static ReactiveWebApplicationContextRunner gateway() {
+        return new ReactiveWebApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(WebFluxAutoConfiguration.class, GatewayAutoConfiguration.class))
+                .withBean(ServerProperties.class)
+                .withUserConfiguration(ServicePoolRoutingFilter.class);
+    }
+
+    private ServicePoolRoutingFilter routingFilter() {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxHeaderSize(DataSize.ofKilobytes(32));
+        properties.setConnectTimeout(1000);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("tracing", (HttpClientCustomizer) client -> {
+            customized.incrementAndGet();
+            return client;
+        });
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("gateway.upstream.services.blog-post.protocol", "h2c");
+
+        return new ServicePoolRoutingFilter(HttpClient.create(),
+                beans.getBeanProvider(ResolvableType.forClassWithGenerics(List.class, HttpHeadersFilter.class)),
+                properties,
+                new ServerProperties(),
+                beans.getBeanProvider(HttpClientCustomizer.class),
+                environment);
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost"));
+    }
+}
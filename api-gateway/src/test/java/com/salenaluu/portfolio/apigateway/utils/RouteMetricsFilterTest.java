@@ -0,0 +1,76 @@
+package com.salenaluu.portfolio.apigateway.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+class RouteMetricsFilterTest {
+    private static final Route ROUTE = Route.async()
+            .id("BlogPostController")
+            .uri("lb://blog-post")
+            .predicate(exchange -> true)
+            .build();
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    RouteMetricsFilter routeMetrics = new RouteMetricsFilter(registry, new double[]{0.99}, false,
+            Duration.ofSeconds(30), Duration.ofMillis(50));
+    GatewayFilterChain upstream = exchange -> {
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        return exchange.getResponse().setComplete();
+    };
+
+    @Test
+    @DisplayName("should record the requests of the route by the instance, which answered them")
+    void should_record_requests_by_instance() {
+        request("blog-post-1");
+        request("blog-post-1");
+        request("blog-post-2");
+
+        assertThat(registry.get("gateway.route.requests")
+                .tag("route", "BlogPostController")
+                .tag("instance", "blog-post-1")
+                .tag("outcome", "SUCCESS")
+                .timer()
+                .count()).isEqualTo(2);
+        assertThat(registry.get("gateway.route.requests")
+                .tag("instance", "blog-post-2")
+                .tag("outcome", "SUCCESS")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should remove the timers of an instance, which gets no requests anymore")
+    void should_remove_timers_of_idle_instance() throws InterruptedException {
+        request("blog-post-1");
+        assertThat(registry.find("gateway.route.requests").tag("instance", "blog-post-1").timers()).hasSize(3);
+
+        // blog-post-1 deregistered, its successor takes the requests
+        Thread.sleep(200);
+        request("blog-post-2");
+
+        assertThat(registry.find("gateway.route.requests").tag("instance", "blog-post-1").timers()).isEmpty();
+        assertThat(registry.find("gateway.route.requests").tag("instance", "blog-post-2").timers()).hasSize(3);
+    }
+
+    private void request(String instance) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/blogpost"));
+        exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, ROUTE);
+        exchange.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR,
+                new DefaultResponse(new DefaultServiceInstance(instance, "blog-post", "localhost", 8080, false)));
+        routeMetrics.filter(exchange, upstream).block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,102 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Read-through cache of single BlogPosts, keyed by title and creatorEmail.
+// Caffeine bounds it by size (W-TinyLFU admission) and TTL, concurrent misses of the same key share one load.
+@Component
+public class BlogPostCache implements MeterBinder {
+
+    private final AsyncCache<Key, BlogPost> cache;
+    // Change stream events only know the id of a BlogPost, not its (maybe already renamed) title
+    private final Map<UUID, Key> keysById = new ConcurrentHashMap<>();
+    // Keys with a load in flight (and how many), their id is unknown until the load completes
+    private final Map<Key, Integer> loading = new ConcurrentHashMap<>();
+
+    public BlogPostCache(@Value("${blog-post.cache.maximum-size:10000}") long maximumSize,
+                         @Value("${blog-post.cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .removalListener(this::forgetKey)
+                .buildAsync();
+    }
+
+    public Mono<BlogPost> get(String title, String email, Supplier<Mono<BlogPost>> loader) {
+        // thenApply() gives every subscriber its own future, a cancelled request can't cancel the shared load
+        return Mono.fromFuture(() -> cache
+                .get(new Key(title, email), (key, executor) -> {
+                    loading.merge(key, 1, Integer::sum);
+                    return loader.get()
+                            .doOnNext(blogPost -> keysById.put(blogPost.getId(), key))
+                            .doFinally(signal -> loading.computeIfPresent(key, (k, loads) -> loads == 1 ? null : loads - 1))
+                            .toFuture();
+                })
+                .thenApply(Function.identity()));
+    }
+
+    // Only a completed load, it never waits for one in flight
+    public Mono<BlogPost> getIfPresent(String title, String email) {
+        CompletableFuture<BlogPost> cached = cache.getIfPresent(new Key(title, email));
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()){
+            return Mono.empty();
+        }
+        return Mono.justOrEmpty(cached.getNow(null));
+    }
+
+    // An in-flight load of the key is dropped as well, it can't put an outdated BlogPost back into the cache
+    public void invalidate(String title, String email) {
+        cache.synchronous().invalidate(new Key(title, email));
+    }
+
+    public void invalidate(UUID id) {
+        // A load in flight might have read the BlogPost before the change, we can't tell which one it is.
+        // Checked before keysById, so a load completing in between is still caught by its id.
+        loading.keySet().forEach(cache.synchronous()::invalidate);
+        Key key = keysById.remove(id);
+        if (key != null){
+            cache.synchronous().invalidate(key);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // Removal listeners run asynchronously, a new load of the same key might already be in the cache.
+    // computeIfPresent() serializes with the put of that load, so we only forget keys, which are really gone.
+    private void forgetKey(Key key, BlogPost blogPost, RemovalCause cause) {
+        if (key != null && blogPost != null){
+            keysById.computeIfPresent(blogPost.getId(), (id, mappedKey) ->
+                    mappedKey.equals(key) && !cache.asMap().containsKey(key) ? null : mappedKey);
+        }
+    }
+
+    // Exposes cache.gets (hit/miss), cache.evictions and cache.size through the actuator metrics
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache.synchronous(), "blogPost", Collections.emptyList())
+                .bindTo(registry);
+    }
+
+    private record Key(String title, String email) {}
+}
@@ -0,0 +1,126 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.UUID;
+
+// Every blog-post instance watches blog_post with one change stream and drops the BlogPosts changed
+// by any instance from its local BlogPostCache.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "blog-post.cache.change-stream.enabled", matchIfMissing = true)
+public class BlogPostChangeStreamListener {
+    private static final String COLLECTION = "blog_post";
+    // Change streams need a replica set, a standalone server answers with this code
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final BlogPostCache blogPostCache;
+    private final EncodedResponseCache encodedResponseCache;
+    private final MongoProperties mongoProperties;
+
+    private volatile BsonValue resumeToken;
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (subscription != null && !subscription.isDisposed()){
+            return;
+        }
+        subscription = changeStream()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .filter(error -> !isServerError(error, NOT_A_REPLICA_SET))
+                        .doBeforeRetry(signal -> log.warn("Change stream on {} failed, reconnecting: {}",
+                                COLLECTION, signal.failure().getMessage())))
+                // The server closes the stream e.g. after an invalidate event, we simply open a new one
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .subscribe(this::onEvent, error -> log.warn(
+                        "Stopped watching {}, the BlogPostCache is only invalidated locally: {}",
+                        COLLECTION, error.getMessage()));
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (subscription != null){
+            subscription.dispose();
+        }
+    }
+
+    private Flux<ChangeStreamEvent<Document>> changeStream() {
+        return Flux.defer(() -> {
+            BsonValue token = resumeToken;
+            ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder();
+            if (token == null){
+                // Without a resume token we can't know, what happened while we weren't listening
+                blogPostCache.invalidateAll();
+                encodedResponseCache.invalidateFirstPages();
+            } else {
+                options.resumeAfter(token);
+            }
+            return mongoTemplate
+                    .changeStream(COLLECTION, options.build(), Document.class)
+                    .doOnError(error -> {
+                        // The oplog doesn't reach back to our token anymore (or it is broken), reconnect without it
+                        if (token != null && isServerError(error, null)){
+                            log.warn("Resume token of the change stream on {} is lost, flushing the BlogPostCache",
+                                    COLLECTION);
+                            resumeToken = null;
+                        }
+                    });
+        });
+    }
+
+    private void onEvent(ChangeStreamEvent<Document> event) {
+        OperationType operationType = event.getOperationType();
+        // Every change, even a new BlogPost, might move the first pages
+        encodedResponseCache.invalidateFirstPages();
+        if (operationType == OperationType.UPDATE
+                || operationType == OperationType.REPLACE
+                || operationType == OperationType.DELETE){
+            blogPostCache.invalidate(idOf(event));
+        } else if (operationType != OperationType.INSERT){
+            // A new BlogPost can't be in the BlogPostCache yet, but drop, rename, dropDatabase, invalidate ... flush it
+            blogPostCache.invalidateAll();
+        }
+        // After an invalidate event the stream can't be resumed anymore
+        resumeToken = operationType == OperationType.INVALIDATE ? null : event.getResumeToken();
+    }
+
+    private UUID idOf(ChangeStreamEvent<Document> event) {
+        return event.getRaw()
+                .getDocumentKey()
+                .get("_id")
+                .asBinary()
+                .asUuid(mongoProperties.getUuidRepresentation());
+    }
+
+    // Walks the causes, as spring translates the exceptions of the driver
+    private static boolean isServerError(Throwable error, Integer code) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException serverException){
+                return code == null || serverException.getCode() == code;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Optional cache (blog-post.cache.encoded.enabled) of responses, which are already encoded to JSON.
+// The bytes of a BlogPost belong to the instance in the BlogPostCache (weak keys compare by identity),
+// every invalidation there drops them as well. The first pages are dropped on every change of blog_post.
+@Component
+public class EncodedResponseCache {
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final Cache<BlogPost, byte[]> blogPosts;
+    private final AsyncCache<Integer, byte[]> firstPages;
+
+    public EncodedResponseCache(@Value("${blog-post.cache.encoded.enabled:false}") boolean enabled,
+                                @Value("${blog-post.cache.encoded.first-page-expire-after-write:10s}") Duration firstPageExpireAfterWrite,
+                                ObjectMapper objectMapper) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        this.blogPosts = Caffeine.newBuilder()
+                .weakKeys()
+                .build();
+        this.firstPages = Caffeine.newBuilder()
+                // one page per limit
+                .maximumSize(100)
+                .expireAfterWrite(firstPageExpireAfterWrite)
+                .buildAsync();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <T> byte[] blogPost(BlogPost blogPost, Function<BlogPost, T> toResponse) {
+        return blogPosts.get(blogPost, cached -> encode(toResponse.apply(cached)));
+    }
+
+    public <T> Mono<byte[]> firstPage(int limit, Supplier<Mono<T>> loader) {
+        return Mono.fromFuture(() -> firstPages
+                .get(limit, (key, executor) -> loader.get()
+                        .map(this::encode)
+                        .toFuture())
+                .thenApply(Function.identity()));
+    }
+
+    // An in-flight load is dropped as well, it can't put an outdated page back into the cache
+    public void invalidateFirstPages() {
+        firstPages.synchronous().invalidateAll();
+    }
+
+    private byte[] encode(Object response) {
+        try {
+            // The same ObjectMapper as the JSON encoder of WebFlux, so the bytes don't differ
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.salenaluu.portfolio.blogpost.config;
+
+import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlogPostMigration {
+
+    private final IBlogPostRepository blogPostRepository;
+
+    // Older BlogPosts have no tagMask yet, without one they never match "all" or "exact" in /filter
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTagMasks() {
+        blogPostRepository
+                .backfillTagMasks()
+                .subscribe(
+                        updated -> log.info("tagMask backfilled for {} BlogPosts", updated),
+                        error -> log.error("tagMask backfill failed", error));
+    }
+}
\ No newline at end of file
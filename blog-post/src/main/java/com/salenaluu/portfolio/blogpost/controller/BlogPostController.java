@@ -1,17 +1,28 @@
 package com.salenaluu.portfolio.blogpost.controller;
 
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
 import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
+import com.salenaluu.portfolio.blogpost.utils.conditional.CacheValidator;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequestUpdate;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostSummaryResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BulkItemResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.function.Supplier;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/blogpost")
@@ -19,6 +30,7 @@ import reactor.core.publisher.Mono;
 public class BlogPostController {
 
     private final BlogPostServiceImpl blogPostServiceImpl;
+    private final EncodedResponseCache encodedResponseCache;
 
     @PostMapping
     @PreAuthorize("hasAuthority('portfolio_explorer')")
@@ -29,26 +41,76 @@ public class BlogPostController {
        return blogPostServiceImpl.createBlogPost(blogPostRequest,creatorEmail);
     }
 
-    @GetMapping("/find")
+    // Takes a JSON array or NDJSON and streams one result per BlogPost back, while the batch is still written
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
     @PreAuthorize("hasAuthority('portfolio_explorer')")
     @ResponseStatus(HttpStatus.OK)
-    public Mono<BlogPostResponse> getBlogPostByTitleAndCreatorEmail(
-            @RequestParam String title,
+    public Flux<BulkItemResult> createBlogPosts(
+            @RequestBody Flux<BlogPostRequest> blogPostRequests,
             @RequestParam String creatorEmail){
-        return blogPostServiceImpl.getBlogPostByTitleAndCreatorEmail(title,creatorEmail);
+        return blogPostServiceImpl.createBlogPosts(blogPostRequests,creatorEmail);
+    }
+
+    // A conditional request gets its 304 from the version of the BlogPost, the content isn't loaded for it.
+    // With the EncodedResponseCache the cached JSON is wrapped into the response buffer, without encoding it again.
+    @GetMapping(value = "/find", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('portfolio_explorer')")
+    public Mono<ResponseEntity<Object>> getBlogPostByTitleAndCreatorEmail(
+            @RequestParam String title,
+            @RequestParam String creatorEmail,
+            ServerWebExchange exchange){
+        return blogPostServiceImpl
+                .getBlogPostValidator(title,creatorEmail,isConditional(exchange))
+                .flatMap(validator -> conditionalResponse(exchange, validator, () -> encodedResponseCache.isEnabled()
+                        ? blogPostServiceImpl.getEncodedBlogPostByTitleAndCreatorEmail(title,creatorEmail)
+                                .<Object>map(exchange.getResponse().bufferFactory()::wrap)
+                        : blogPostServiceImpl.getBlogPostByTitleAndCreatorEmail(title,creatorEmail)
+                                .cast(Object.class)));
     }
 
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public Flux<BlogPostResponse> getAllBlogPosts(){
-        return blogPostServiceImpl.getAllBlogPosts();
+    public Mono<ResponseEntity<Flux<BlogPostResponse>>> getAllBlogPosts(ServerWebExchange exchange){
+        return conditionalList(exchange, blogPostServiceImpl::getAllBlogPosts);
+    }
+
+    // With summary=true the content stays in the database, except for an optional excerpt
+    @GetMapping(params = "summary=true")
+    public Mono<ResponseEntity<Flux<BlogPostSummaryResponse>>> getAllBlogPostSummaries(
+            @RequestParam(defaultValue = "0") int excerpt,
+            ServerWebExchange exchange){
+        return conditionalList(exchange, () -> blogPostServiceImpl.getAllBlogPostSummaries(excerpt));
+    }
+
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getBlogPostPage(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String continuationToken,
+            ServerHttpResponse response){
+        if (encodedResponseCache.isEnabled() && continuationToken == null){
+            return blogPostServiceImpl.getEncodedFirstBlogPostPage(limit)
+                    .<ResponseEntity<?>>map(bytes -> ResponseEntity.ok().body(response.bufferFactory().wrap(bytes)));
+        }
+        return blogPostServiceImpl.getBlogPostPage(limit,continuationToken)
+                .<ResponseEntity<?>>map(page -> ResponseEntity.ok().body(page));
     }
 
     @GetMapping("/filter")
     @ResponseStatus(HttpStatus.OK)
     public Flux<BlogPostResponse> getBlogPostByTags(
-            @RequestParam String[] tags){
-        return blogPostServiceImpl.getAllBlogPostsWithTags(tags);
+            @RequestParam String[] tags,
+            @RequestParam(defaultValue = "any") String match){
+        return blogPostServiceImpl.getAllBlogPostsWithTags(tags,match);
+    }
+
+    @GetMapping(value = "/filter", params = "summary=true")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<BlogPostSummaryResponse> getBlogPostSummariesByTags(
+            @RequestParam String[] tags,
+            @RequestParam(defaultValue = "any") String match,
+            @RequestParam(defaultValue = "0") int excerpt){
+        return blogPostServiceImpl.getAllBlogPostSummariesWithTags(tags,match,excerpt);
     }
 
     @PutMapping("/update")
@@ -60,6 +122,17 @@ public class BlogPostController {
         return blogPostServiceImpl.updateBlogPost(blogPostRequest,creatorEmail);
     }
 
+    @PutMapping(value = "/bulk/update",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority('portfolio_explorer')")
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<BulkItemResult> updateBlogPosts(
+            @RequestBody Flux<BlogPostRequestUpdate> blogPostRequests,
+            @RequestParam String creatorEmail){
+        return blogPostServiceImpl.updateBlogPosts(blogPostRequests,creatorEmail);
+    }
+
     @DeleteMapping
     @PreAuthorize("hasAuthority('portfolio_explorer')")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -68,4 +141,40 @@ public class BlogPostController {
             @RequestParam String creatorEmail){
         return blogPostServiceImpl.deleteBlogPostByTitleAndCreatorEmail(title,creatorEmail);
     }
+
+    private static boolean isConditional(ServerWebExchange exchange){
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        return !headers.getIfNoneMatch().isEmpty() || headers.getIfModifiedSince() != -1;
+    }
+
+    // The Flux is only built when the collection has changed, a 304 doesn't query the BlogPosts
+    private <T> Mono<ResponseEntity<Flux<T>>> conditionalList(ServerWebExchange exchange,
+                                                              Supplier<Flux<T>> blogPosts){
+        return blogPostServiceImpl
+                .getAllBlogPostsValidator()
+                .flatMap(validator -> conditionalResponse(exchange, validator, () -> Mono.just(blogPosts.get())))
+                .switchIfEmpty(Mono.fromSupplier(() -> ResponseEntity.ok().body(blogPosts.get())));
+    }
+
+    // Sets ETag and Last-Modified. If the client is up to date, it gets 304 Not Modified, the body is never loaded.
+    private static <T> Mono<ResponseEntity<T>> conditionalResponse(ServerWebExchange exchange,
+                                                                   CacheValidator validator,
+                                                                   Supplier<Mono<T>> body){
+        boolean notModified = validator.lastModified() == null
+                ? exchange.checkNotModified(validator.eTag())
+                : exchange.checkNotModified(validator.eTag(), validator.lastModified());
+        if (notModified){
+            return Mono.just(validated(ResponseEntity.status(HttpStatus.NOT_MODIFIED), validator).build());
+        }
+        return body.get().map(validated(ResponseEntity.ok(), validator)::body);
+    }
+
+    private static ResponseEntity.BodyBuilder validated(ResponseEntity.BodyBuilder response, CacheValidator validator){
+        response.eTag(validator.eTag());
+        // a list has none
+        if (validator.lastModified() != null){
+            response.lastModified(validator.lastModified());
+        }
+        return response;
+    }
 }
@@ -3,6 +3,10 @@ package com.salenaluu.portfolio.blogpost.model;
 import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Email;
@@ -18,7 +22,17 @@ import java.util.UUID;
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Document(collection = "blog_post")
+@CompoundIndexes({
+        // A creator can't publish two BlogPosts with the same title, Mongo rejects the duplicate for us.
+        @CompoundIndex(name = "title_creator_email", def = "{'title': 1, 'creatorEmail': 1}", unique = true),
+        // Supports the keyset pagination, newest BlogPosts first
+        @CompoundIndex(name = "published_at_id", def = "{'publishedAt': -1, '_id': -1}"),
+        // Covers the version lookups of conditional requests (ETag / Last-Modified), no document is fetched
+        @CompoundIndex(name = BlogPost.VERSION_INDEX, def = "{'title': 1, 'creatorEmail': 1, 'version': 1, 'publishedAt': 1}")
+})
 public class BlogPost {
+    public static final String VERSION_INDEX = "title_creator_email_version";
+
     @Id
     private UUID id;
 
@@ -34,5 +48,35 @@ public class BlogPost {
 
     @Email(message = "Mail-Address invalid")
     private String creatorEmail;
+
+    // Multikey index for the "any" match of /filter
+    @Indexed
     private Set<Tags> tags = new HashSet<>();
+
+    // Bitmask of the tags (see Tags.mask()), turns "all" and "exact" matches into an indexed equality
+    @Indexed
+    private int tagMask;
+
+    // Optimistic locking, every update increments the version
+    @Version
+    private Long version;
+
+    public BlogPost(UUID id,
+                    @NonNull String title,
+                    @NonNull String content,
+                    String publishedAt,
+                    String creatorEmail,
+                    Set<Tags> tags) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.publishedAt = publishedAt;
+        this.creatorEmail = creatorEmail;
+        setTags(tags);
+    }
+
+    public void setTags(Set<Tags> tags) {
+        this.tags = tags;
+        this.tagMask = Tags.maskOf(tags);
+    }
 }
@@ -0,0 +1,13 @@
+package com.salenaluu.portfolio.blogpost.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Version of blog_post as a whole: every insert, update and delete changes at least one of the fields.
+@Data
+@NoArgsConstructor
+public class BlogPostCollectionVersion {
+    private long count;
+    private long versions;
+    private String lastModified;
+}
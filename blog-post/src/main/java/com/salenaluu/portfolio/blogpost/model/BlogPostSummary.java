@@ -0,0 +1,19 @@
+package com.salenaluu.portfolio.blogpost.model;
+
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Projection of a BlogPost for list views, the content only leaves Mongo as a short excerpt (if requested).
+@Data
+@NoArgsConstructor
+public class BlogPostSummary {
+    private String title;
+    private String publishedAt;
+    private String creatorEmail;
+    private Set<Tags> tags = new HashSet<>();
+    private String excerpt;
+}
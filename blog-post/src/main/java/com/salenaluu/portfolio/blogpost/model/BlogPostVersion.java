@@ -0,0 +1,13 @@
+package com.salenaluu.portfolio.blogpost.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Projection of a BlogPost for conditional requests, read from an index without touching the document.
+@Data
+@NoArgsConstructor
+public class BlogPostVersion {
+    private String title;
+    private Long version;
+    private String publishedAt;
+}
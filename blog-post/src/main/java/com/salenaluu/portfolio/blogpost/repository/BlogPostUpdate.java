@@ -0,0 +1,6 @@
+package com.salenaluu.portfolio.blogpost.repository;
+
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+
+// One update of a bulkUpdate: the BlogPost with this title (and version, if given) gets the changes.
+public record BlogPostUpdate(String title, Long version, BlogPost changes) {}
@@ -0,0 +1,8 @@
+package com.salenaluu.portfolio.blogpost.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+
+import java.util.List;
+
+// Result of an unordered bulkWrite. The index of an error is the position of its write in the bulk.
+public record BulkWriteOutcome(int matchedCount, List<BulkWriteError> errors) {}
@@ -9,9 +9,9 @@ import reactor.core.publisher.Mono;
 import java.util.Set;
 import java.util.UUID;
 
-public interface IBlogPostRepository extends ReactiveMongoRepository<BlogPost, UUID> {
+public interface IBlogPostRepository extends ReactiveMongoRepository<BlogPost, UUID>, IBlogPostRepositoryCustom {
     Mono<BlogPost> findByTitleAndCreatorEmail(String title, String email);
     Mono<Boolean> existsBlogPostByTitleAndCreatorEmail(String title, String email);
-    Mono<Void> deleteBlogPostByTitleAndCreatorEmail(String title, String email);
+    Mono<Long> deleteBlogPostByTitleAndCreatorEmail(String title, String email);
     Flux<BlogPost> findAllByTags(Set<Tags> tags);
 }
\ No newline at end of file
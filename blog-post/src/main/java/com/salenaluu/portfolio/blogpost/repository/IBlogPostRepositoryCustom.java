@@ -0,0 +1,29 @@
+package com.salenaluu.portfolio.blogpost.repository;
+
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostCollectionVersion;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
+import com.salenaluu.portfolio.blogpost.utils.enums.TagMatch;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public interface IBlogPostRepositoryCustom {
+    Mono<BlogPost> findAndModifyByTitleAndCreatorEmail(String title, String email, Long version, BlogPost changes);
+    Flux<BlogPost> findPageAfter(String publishedAt, UUID id, int limit);
+    Flux<BlogPostSummary> findAllSummaries(int excerptLength);
+    Flux<BlogPost> findAllByTagMatch(Set<Tags> tags, TagMatch match);
+    Flux<BlogPostSummary> findAllSummariesByTagMatch(Set<Tags> tags, TagMatch match, int excerptLength);
+    Mono<Long> backfillTagMasks();
+    Mono<BlogPostVersion> findVersionByTitleAndCreatorEmail(String title, String email);
+    Mono<BlogPostCollectionVersion> findCollectionVersion();
+    Flux<BlogPostVersion> findVersionsByCreatorEmailAndTitleIn(String email, Collection<String> titles);
+    Mono<BulkWriteOutcome> bulkInsert(List<BlogPost> blogPosts);
+    Mono<BulkWriteOutcome> bulkUpdate(String email, List<BlogPostUpdate> updates);
+}
@@ -0,0 +1,268 @@
+package com.salenaluu.portfolio.blogpost.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostCollectionVersion;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
+import com.salenaluu.portfolio.blogpost.utils.enums.TagMatch;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+public class IBlogPostRepositoryCustomImpl implements IBlogPostRepositoryCustom {
+
+    private static final int MAX_SUPERSET_MASKS = 64;
+    private static final int BACKFILL_CONCURRENCY = 8;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // One findAndModify: matches the BlogPost (and its version, if the client sent one),
+    // applies the changes, increments the version and returns the new document.
+    // Empty means nothing matched, either the BlogPost is gone or the version is outdated.
+    @Override
+    public Mono<BlogPost> findAndModifyByTitleAndCreatorEmail(String title, String email, Long version, BlogPost changes) {
+        Query query = new Query(where("title").is(title)
+                .and("creatorEmail").is(email));
+        if (version != null){
+            query.addCriteria(where("version").is(version));
+        }
+
+        Update update = new Update()
+                .set("title", changes.getTitle())
+                .set("content", changes.getContent())
+                .set("publishedAt", changes.getPublishedAt())
+                .set("tags", changes.getTags())
+                .set("tagMask", changes.getTagMask())
+                .inc("version", 1);
+
+        return mongoTemplate.findAndModify(
+                query,
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                BlogPost.class);
+    }
+
+    // Keyset pagination on (publishedAt, id), newest first. Without a cursor it returns the first page.
+    // Every page is a bounded index range scan, no matter how deep we page into the collection.
+    @Override
+    public Flux<BlogPost> findPageAfter(String publishedAt, UUID id, int limit) {
+        Query query = new Query();
+        if (publishedAt != null && id != null){
+            query.addCriteria(new Criteria().orOperator(
+                    where("publishedAt").lt(publishedAt),
+                    where("publishedAt").is(publishedAt).and("id").lt(id)));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "publishedAt", "id"))
+                .limit(limit);
+
+        return mongoTemplate.find(query, BlogPost.class);
+    }
+
+    @Override
+    public Flux<BlogPostSummary> findAllSummaries(int excerptLength) {
+        return findSummaries(new Criteria(), excerptLength);
+    }
+
+    @Override
+    public Flux<BlogPost> findAllByTagMatch(Set<Tags> tags, TagMatch match) {
+        return mongoTemplate.find(new Query(tagCriteria(tags, match)), BlogPost.class);
+    }
+
+    @Override
+    public Flux<BlogPostSummary> findAllSummariesByTagMatch(Set<Tags> tags, TagMatch match, int excerptLength) {
+        return findSummaries(tagCriteria(tags, match), excerptLength);
+    }
+
+    // BlogPosts written before the tagMask existed don't have one, so we compute it once for them.
+    // Spring Data reads the fields directly, setTags() isn't called, the mask has to be built from the tags.
+    @Override
+    public Mono<Long> backfillTagMasks() {
+        return mongoTemplate
+                .find(new Query(where("tagMask").exists(false)), BlogPost.class)
+                .flatMap(blogPost -> mongoTemplate.updateFirst(
+                        new Query(where("id").is(blogPost.getId())),
+                        Update.update("tagMask", Tags.maskOf(blogPost.getTags())),
+                        BlogPost.class), BACKFILL_CONCURRENCY)
+                .count();
+    }
+
+    // Covered by the version index: Mongo answers from the index keys, the content is never read
+    @Override
+    public Mono<BlogPostVersion> findVersionByTitleAndCreatorEmail(String title, String email) {
+        Query query = new Query(where("title").is(title)
+                .and("creatorEmail").is(email))
+                .withHint(BlogPost.VERSION_INDEX);
+        query.fields()
+                .include("version", "publishedAt")
+                .exclude("_id");
+
+        return mongoTemplate
+                .query(BlogPost.class)
+                .as(BlogPostVersion.class)
+                .matching(query)
+                .one();
+    }
+
+    @Override
+    public Flux<BlogPostVersion> findVersionsByCreatorEmailAndTitleIn(String email, Collection<String> titles) {
+        Query query = new Query(where("title").in(titles)
+                .and("creatorEmail").is(email))
+                .withHint(BlogPost.VERSION_INDEX);
+        query.fields()
+                .include("title", "version", "publishedAt")
+                .exclude("_id");
+
+        return mongoTemplate
+                .query(BlogPost.class)
+                .as(BlogPostVersion.class)
+                .matching(query)
+                .all();
+    }
+
+    // One unordered bulkWrite: a duplicate title doesn't stop the other inserts
+    @Override
+    public Mono<BulkWriteOutcome> bulkInsert(List<BlogPost> blogPosts) {
+        List<InsertOneModel<Document>> inserts = blogPosts.stream()
+                .map(blogPost -> {
+                    // what insert() does for the @Version of a new BlogPost
+                    blogPost.setVersion(0L);
+                    Document document = new Document();
+                    mongoTemplate.getConverter().write(blogPost, document);
+                    return new InsertOneModel<>(document);
+                })
+                .toList();
+
+        return bulkWrite(inserts);
+    }
+
+    // The same update as findAndModifyByTitleAndCreatorEmail(), for a whole chunk in one bulkWrite
+    @Override
+    public Mono<BulkWriteOutcome> bulkUpdate(String email, List<BlogPostUpdate> updates) {
+        List<UpdateOneModel<Document>> writes = updates.stream()
+                .map(update -> {
+                    Document filter = new Document("title", update.title())
+                            .append("creatorEmail", email);
+                    if (update.version() != null){
+                        filter.append("version", update.version());
+                    }
+                    BlogPost changes = update.changes();
+                    return new UpdateOneModel<Document>(filter, new Document()
+                            .append("$set", new Document("title", changes.getTitle())
+                                    .append("content", changes.getContent())
+                                    .append("publishedAt", changes.getPublishedAt())
+                                    .append("tags", changes.getTags().stream().map(Enum::name).toList())
+                                    .append("tagMask", changes.getTagMask()))
+                            .append("$inc", new Document("version", 1)));
+                })
+                .toList();
+
+        return bulkWrite(writes);
+    }
+
+    private Mono<BulkWriteOutcome> bulkWrite(List<? extends WriteModel<Document>> writes) {
+        if (writes.isEmpty()){
+            return Mono.just(new BulkWriteOutcome(0, List.of()));
+        }
+        return mongoTemplate
+                .getCollection(mongoTemplate.getCollectionName(BlogPost.class))
+                .flatMap(collection -> Mono.from(collection
+                        .bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .map(result -> new BulkWriteOutcome(result.getMatchedCount(), List.of()))
+                // The writes without an error went through all the same
+                .onErrorResume(MongoBulkWriteException.class, failed -> Mono.just(new BulkWriteOutcome(
+                        failed.getWriteResult().getMatchedCount(),
+                        failed.getWriteErrors())));
+    }
+
+    // A scan over the version index only, far less to read than the BlogPosts themselves
+    @Override
+    public Mono<BlogPostCollectionVersion> findCollectionVersion() {
+        return mongoTemplate
+                .aggregate(newAggregation(BlogPost.class,
+                                project("version", "publishedAt").andExclude("_id"),
+                                group()
+                                        .count().as("count")
+                                        .sum("version").as("versions")
+                                        .max("publishedAt").as("lastModified"))
+                                .withOptions(AggregationOptions.builder()
+                                        .hint(new Document("title", 1)
+                                                .append("creatorEmail", 1)
+                                                .append("version", 1)
+                                                .append("publishedAt", 1))
+                                        .build()),
+                        BlogPostCollectionVersion.class)
+                .next();
+    }
+
+    // any:   multikey index on tags
+    // exact: equality on the indexed tagMask
+    // all:   the tagMask has to be one of the supersets of the requested mask, an indexed $in as long as
+    //        the number of Tags is small. Otherwise the multikey index narrows down and $bitsAllSet filters.
+    private Criteria tagCriteria(Set<Tags> tags, TagMatch match) {
+        int mask = Tags.maskOf(tags);
+        return switch (match) {
+            case ANY -> where("tags").in(tags);
+            case EXACT -> where("tagMask").is(mask);
+            case ALL -> {
+                List<Integer> supersets = supersetMasksOf(mask);
+                yield supersets.size() <= MAX_SUPERSET_MASKS
+                        ? where("tagMask").in(supersets)
+                        : where("tags").all(tags).and("tagMask").bits().allSet(mask);
+            }
+        };
+    }
+
+    private List<Integer> supersetMasksOf(int mask) {
+        int unusedTags = ((1 << Tags.values().length) - 1) & ~mask;
+        List<Integer> supersets = new ArrayList<>();
+        // walks through every subset of the unused Tags
+        for (int subset = unusedTags; ; subset = (subset - 1) & unusedTags) {
+            supersets.add(mask | subset);
+            if (subset == 0 || supersets.size() > MAX_SUPERSET_MASKS){
+                return supersets;
+            }
+        }
+    }
+
+    // Mongo projects the summary fields, so the full content never leaves the database.
+    // With an excerptLength > 0 only the first characters of the content are shipped.
+    private Flux<BlogPostSummary> findSummaries(Criteria criteria, int excerptLength) {
+        ProjectionOperation projection = project("title", "publishedAt", "creatorEmail", "tags")
+                .andExclude("_id");
+        if (excerptLength > 0){
+            projection = projection
+                    .and(StringOperators.valueOf("content").substringCP(0, excerptLength))
+                    .as("excerpt");
+        }
+
+        return mongoTemplate.aggregate(
+                newAggregation(BlogPost.class, match(criteria), projection),
+                BlogPostSummary.class);
+    }
+}
@@ -1,29 +1,102 @@
 package com.salenaluu.portfolio.blogpost.security;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.oauth2.server.resource.introspection.ReactiveOpaqueTokenIntrospector;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 @Profile(value = {"development","production"})
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class BlogPostSecurityConfig{
+    private static final String TOKEN_VALIDATION = "security.token-validation";
+    private static final String INTERNAL_PRINCIPAL = "X-Internal-Principal";
+
+    // introspection: the identity provider checks every (uncached) token
+    // jwt:           the signature of the token is verified locally with the keys of the JwkSetCache
+    // relay:         only the principal signed by the api-gateway is trusted, the token isn't checked again
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
-        return http.csrf().disable()
+    public SecurityWebFilterChain securityWebFilterChain(
+            ServerHttpSecurity http,
+            @Value("${" + TOKEN_VALIDATION + ":introspection}") String tokenValidation) {
+        ServerHttpSecurity.OAuth2ResourceServerSpec resourceServer = http.csrf().disable()
                 .authorizeExchange()
                 .anyExchange().authenticated()
                 .and()
-                .oauth2ResourceServer()
-                .opaqueToken().and().and().build();
+                .oauth2ResourceServer();
+        if ("jwt".equalsIgnoreCase(tokenValidation)){
+            resourceServer.jwt().jwtAuthenticationConverter(new JwtGroupsAuthenticationConverter());
+        } else if ("relay".equalsIgnoreCase(tokenValidation)){
+            resourceServer
+                    .bearerTokenConverter(exchange -> Mono
+                            .justOrEmpty(exchange.getRequest().getHeaders().getFirst(INTERNAL_PRINCIPAL))
+                            .<Authentication>map(BearerTokenAuthenticationToken::new))
+                    .jwt().jwtAuthenticationConverter(new JwtGroupsAuthenticationConverter());
+        } else {
+            resourceServer.opaqueToken();
+        }
+        return http.build();
     }
 
+    // The concrete type lets actuator find the MeterBinder of the introspection cache
     @Bean
-    public ReactiveOpaqueTokenIntrospector introspector() {
+    @ConditionalOnProperty(name = TOKEN_VALIDATION, havingValue = "introspection", matchIfMissing = true)
+    public JwtOpaqueTokenIntrospector introspector() {
         return new JwtOpaqueTokenIntrospector();
     }
+
+    @Bean
+    @ConditionalOnProperty(name = TOKEN_VALIDATION, havingValue = "jwt")
+    JwkSetCache jwkSetCache(
+            WebClient.Builder webClientBuilder,
+            @Value("${security.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${security.jwt.refresh-interval:5m}") Duration refreshInterval,
+            @Value("${security.jwt.minimum-refresh-interval:10s}") Duration minimumRefreshInterval) {
+        return new JwkSetCache(webClientBuilder.build(), jwkSetUri, refreshInterval, minimumRefreshInterval);
+    }
+
+    // Signature, exp/nbf and (if configured) the issuer are checked, no call leaves the service
+    @Bean
+    @ConditionalOnProperty(name = TOKEN_VALIDATION, havingValue = "jwt")
+    public ReactiveJwtDecoder jwtDecoder(
+            JwkSetCache jwkSetCache,
+            @Value("${security.jwt.issuer-uri:}") String issuerUri) {
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder
+                .withJwkSource(jwkSetCache::keysFor)
+                .build();
+        jwtDecoder.setJwtValidator(issuerUri.isBlank()
+                ? JwtValidators.createDefault()
+                : JwtValidators.createDefaultWithIssuer(issuerUri));
+        return jwtDecoder;
+    }
+
+    // Only the api-gateway knows the secret, the principal it signed is valid for a few seconds
+    @Bean
+    @ConditionalOnProperty(name = TOKEN_VALIDATION, havingValue = "relay")
+    public ReactiveJwtDecoder internalPrincipalDecoder(
+            @Value("${security.internal-principal.secret}") String secret) {
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder
+                .withSecretKey(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"))
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer("api-gateway"));
+        // Nimbus checks the MAC while decode() is called, deferred a wrong signature arrives as error signal
+        return token -> Mono.defer(() -> jwtDecoder.decode(token));
+    }
 }
@@ -0,0 +1,122 @@
+package com.salenaluu.portfolio.blogpost.security;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Introspected principals by the SHA-256 of their token (the token itself is never kept), at most until its exp.
+// Concurrent introspections of the same token share one call, inactive tokens are remembered for a moment.
+class IntrospectionCache implements MeterBinder {
+
+    private final AsyncCache<String, Introspection> cache;
+    private final Duration maximumTtl;
+    private final Duration negativeTtl;
+    private volatile Timer introspectionTimer;
+
+    IntrospectionCache(long maximumSize, Duration maximumTtl, Duration negativeTtl) {
+        this.maximumTtl = maximumTtl;
+        this.negativeTtl = negativeTtl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Introspection>() {
+                    @Override
+                    public long expireAfterCreate(String key, Introspection introspection, long currentTime) {
+                        return introspection.timeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Introspection introspection, long currentTime, long currentDuration) {
+                        return introspection.timeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Introspection introspection, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    Mono<OAuth2AuthenticatedPrincipal> get(String token, Supplier<Mono<OAuth2AuthenticatedPrincipal>> introspection) {
+        // thenApply() gives every request its own future, a cancelled request can't cancel the shared call
+        return Mono.fromFuture(() -> cache
+                        .get(hash(token), (key, executor) -> introspect(introspection))
+                        .thenApply(Function.identity()))
+                .flatMap(cached -> cached.principal() == null
+                        ? Mono.error(new BadOpaqueTokenException("Provided token isn't active"))
+                        : Mono.just(cached.principal()));
+    }
+
+    // Only an inactive token is cached as a failure, an unreachable endpoint is asked again by the next request
+    private CompletableFuture<Introspection> introspect(Supplier<Mono<OAuth2AuthenticatedPrincipal>> introspection) {
+        long started = System.nanoTime();
+        return introspection.get()
+                .map(principal -> new Introspection(principal, timeToLive(principal)))
+                .onErrorResume(BadOpaqueTokenException.class, inactive ->
+                        Mono.just(new Introspection(null, negativeTtl)))
+                .doFinally(signal -> {
+                    Timer timer = introspectionTimer;
+                    if (timer != null){
+                        timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .toFuture();
+    }
+
+    private Duration timeToLive(OAuth2AuthenticatedPrincipal principal) {
+        Instant expiresAt = principal.getAttribute(OAuth2TokenIntrospectionClaimNames.EXP);
+        if (expiresAt == null){
+            return maximumTtl;
+        }
+        Duration untilExpired = Duration.between(Instant.now(), expiresAt);
+        if (untilExpired.isNegative()){
+            return Duration.ZERO;
+        }
+        return untilExpired.compareTo(maximumTtl) < 0 ? untilExpired : maximumTtl;
+    }
+
+    private static String hash(String token) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest
+                    .getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // cache.gets (hit/miss) of the introspections and the latency of the remote calls
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache.synchronous(), "tokenIntrospection", Collections.emptyList())
+                .bindTo(registry);
+        introspectionTimer = Timer.builder("token.introspection")
+                .description("Latency of the remote token introspection")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // principal is null for an inactive token
+    private record Introspection(OAuth2AuthenticatedPrincipal principal, Duration timeToLive) {}
+}
@@ -1,7 +1,10 @@
 package com.salenaluu.portfolio.blogpost.security;
 
 import org.springframework.security.oauth2.server.resource.introspection.ReactiveOpaqueTokenIntrospector;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -11,15 +14,23 @@ import org.springframework.security.oauth2.server.resource.introspection.NimbusR
 import reactor.core.publisher.Mono;
 
 import javax.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 
-public class JwtOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospector {
+public class JwtOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospector, MeterBinder {
     @Autowired
     private OAuth2ResourceServerProperties oAuth2;
+    @Value("${security.introspection.cache.maximum-size:10000}")
+    private long maximumSize;
+    @Value("${security.introspection.cache.maximum-ttl:1m}")
+    private Duration maximumTtl;
+    @Value("${security.introspection.cache.negative-ttl:10s}")
+    private Duration negativeTtl;
     private ReactiveOpaqueTokenIntrospector delegate;
+    private IntrospectionCache introspectionCache;
 
     // Use PostConstruct to inject the needed dependencies before the Constructor
     @PostConstruct
@@ -29,12 +40,19 @@ public class JwtOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospect
                         oAuth2.getOpaquetoken().getIntrospectionUri(),
                         oAuth2.getOpaquetoken().getClientId(),
                         oAuth2.getOpaquetoken().getClientSecret());
+        introspectionCache = new IntrospectionCache(maximumSize, maximumTtl, negativeTtl);
     }
 
+    // Only a token, which isn't in the cache yet, costs a call to the introspection endpoint
     public Mono<OAuth2AuthenticatedPrincipal> introspect(String token) {
-        return delegate
+        return introspectionCache.get(token, () -> delegate
                 .introspect(token)
-                .flatMap(principal -> enhance(principal));
+                .flatMap(principal -> enhance(principal)));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        introspectionCache.bindTo(registry);
     }
 
     private Mono<OAuth2AuthenticatedPrincipal> enhance(OAuth2AuthenticatedPrincipal principal) {
@@ -48,7 +66,7 @@ public class JwtOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospect
         return Mono.just(enhanced);
     }
 
-    private Collection<GrantedAuthority> extractAuthorities(OAuth2AuthenticatedPrincipal principal) {
+    static Collection<GrantedAuthority> extractAuthorities(OAuth2AuthenticatedPrincipal principal) {
 
         Collection<GrantedAuthority> authorities = new ArrayList<>(principal.getAuthorities());
 
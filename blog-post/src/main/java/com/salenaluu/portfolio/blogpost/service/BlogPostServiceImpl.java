@@ -1,22 +1,43 @@
 package com.salenaluu.portfolio.blogpost.service;
 
+import com.salenaluu.portfolio.blogpost.cache.BlogPostCache;
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
 import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
+import com.salenaluu.portfolio.blogpost.repository.BlogPostUpdate;
+import com.salenaluu.portfolio.blogpost.repository.BulkWriteOutcome;
 import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import com.salenaluu.portfolio.blogpost.utils.conditional.CacheValidator;
+import com.salenaluu.portfolio.blogpost.utils.enums.BulkItemStatus;
+import com.salenaluu.portfolio.blogpost.utils.enums.TagMatch;
 import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
 import com.salenaluu.portfolio.blogpost.utils.exceptions.BadRequestException;
+import com.salenaluu.portfolio.blogpost.utils.exceptions.ConflictException;
 import com.salenaluu.portfolio.blogpost.utils.exceptions.NoContentException;
 import com.salenaluu.portfolio.blogpost.utils.exceptions.NotFoundException;
 import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostPage;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequestUpdate;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostSummaryResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BulkItemResult;
+import com.salenaluu.portfolio.blogpost.utils.pagination.ContinuationToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.salenaluu.portfolio.blogpost.utils.enums.ExceptionResponse.*;
@@ -28,150 +49,449 @@ import static java.util.Arrays.stream;
 @RequiredArgsConstructor
 public class BlogPostServiceImpl implements IBlogPostService {
 
+    private static final int MAX_PAGE_LIMIT = 100;
+    private static final int MAX_EXCERPT_LENGTH = 1000;
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final int DUPLICATE_KEY = 11000;
+
     private final IBlogPostRepository blogPostRepository;
+    private final BlogPostCache blogPostCache;
+    private final EncodedResponseCache encodedResponseCache;
 
     @Override
     public Mono<BlogPostResponse> createBlogPost(BlogPostRequest blogPostRequest, String email) {
+        // One insert, the unique title/creatorEmail index rejects duplicates
         return blogPostRepository
-                .existsBlogPostByTitleAndCreatorEmail(
+                .insert(new BlogPost(
+                        UUID.randomUUID(),
                         blogPostRequest.title(),
-                        email)
-                .flatMap(exists -> {
-                    if(exists){
-                        return Mono.error(
-                                new BadRequestException(valueOf(BLOG_POST_ALREADY_EXISTS)));
-                    }
-                    return blogPostRepository
-                            .save(new BlogPost(
-                                    UUID.randomUUID(),
-                                    blogPostRequest.title(),
-                                    blogPostRequest.content(),
-                                    IDateTimeCreator.createDateTime(),
-                                    email,
-                                    stream(blogPostRequest.tags())
-                                            .map(tags -> Tags.valueOf(tags.toUpperCase()))
-                                            .collect(Collectors.toSet())))
-                            .map(blogPost -> new BlogPostResponse(
-                                    blogPost.getTitle(),
-                                    blogPost.getContent(),
-                                    email,
-                                    blogPost.getTags().stream()
-                                            .map(Enum::toString)
-                                            .toArray(String[]::new)))
-                            .switchIfEmpty(Mono.error(
-                                    new BadRequestException(valueOf(REQUESTED_MODEL_INVALID))))
-                            .log();
-
-                }).switchIfEmpty(Mono.error(
-                        new BadRequestException(valueOf(REQUEST_NOT_EXCEPTED))));
+                        blogPostRequest.content(),
+                        IDateTimeCreator.createDateTime(),
+                        email,
+                        stream(blogPostRequest.tags())
+                                .map(tags -> Tags.valueOf(tags.toUpperCase()))
+                                .collect(Collectors.toSet())))
+                .map(this::mapToResponse)
+                .onErrorMap(DuplicateKeyException.class, duplicate ->
+                        new BadRequestException(valueOf(BLOG_POST_ALREADY_EXISTS)))
+                .switchIfEmpty(Mono.error(
+                        new BadRequestException(valueOf(REQUESTED_MODEL_INVALID))))
+                .doOnSuccess(created -> encodedResponseCache.invalidateFirstPages())
+                .log();
+    }
+
+    // Every chunk of the batch is one unordered bulkWrite. Its results are streamed back as soon as
+    // it is written, while the next chunk is still read from the request.
+    @Override
+    public Flux<BulkItemResult> createBlogPosts(Flux<BlogPostRequest> blogPostRequests, String email) {
+        return blogPostRequests
+                .index()
+                .buffer(BULK_CHUNK_SIZE)
+                .concatMap(chunk -> createChunk(chunk, email));
     }
 
     @Override
     public Mono<BlogPostResponse> getBlogPostByTitleAndCreatorEmail(String title, String email) {
-        return blogPostRepository
-                .existsBlogPostByTitleAndCreatorEmail(title,email)
-                .flatMap(exists -> {
-                    if(!exists){
-                        return Mono.error(
-                                new NotFoundException(valueOf(BLOG_POST_NOT_FOUND)));
-                    }
-                    return blogPostRepository
-                            .findByTitleAndCreatorEmail(title,email)
-                            .map(request -> new BlogPostResponse(
-                                    request.getTitle(),
-                                    request.getContent(),
-                                    email,
-                                    request.getTags().stream()
-                                            .map(Enum::toString)
-                                            .toArray(String[]::new)))
-                            .log();
-                }).switchIfEmpty(Mono.error(
-                        new BadRequestException(valueOf(REQUEST_NOT_EXCEPTED))));
+        return blogPostCache
+                .get(title, email, () -> blogPostRepository
+                        .findByTitleAndCreatorEmail(title,email))
+                .map(this::mapToResponse)
+                .switchIfEmpty(Mono.error(
+                        new NotFoundException(valueOf(BLOG_POST_NOT_FOUND))))
+                .log();
     }
 
     @Override
     public Flux<BlogPostResponse> getAllBlogPosts() {
         return blogPostRepository
                 .findAll()
-                .map(blogPost -> new BlogPostResponse(
-                        blogPost.getTitle(),
-                        blogPost.getContent(),
-                        blogPost.getCreatorEmail(),
-                        blogPost.getTags().stream()
-                                .map(Enum::toString)
-                                .toArray(String[]::new)))
+                .map(this::mapToResponse)
                 .switchIfEmpty(Mono.error(
                         new NoContentException(valueOf(NO_CONTENT_IN_DB))));
     }
 
     @Override
-    public Flux<BlogPostResponse> getAllBlogPostsWithTags(String[] tags) {
+    public Mono<BlogPostPage> getBlogPostPage(int limit, String continuationToken) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT){
+            return Mono.error(new BadRequestException(valueOf(PAGE_LIMIT_INVALID)));
+        }
+
+        ContinuationToken after;
+        try {
+            after = continuationToken == null ? null : ContinuationToken.decode(continuationToken);
+        } catch (IllegalArgumentException invalid) {
+            return Mono.error(new BadRequestException(valueOf(CONTINUATION_TOKEN_INVALID)));
+        }
+
+        // We ask for one more BlogPost than needed, to know if there is a next page at all
+        return blogPostRepository
+                .findPageAfter(
+                        after == null ? null : after.publishedAt(),
+                        after == null ? null : after.id(),
+                        limit + 1)
+                .collectList()
+                .flatMap(blogPosts -> {
+                    if (blogPosts.isEmpty() && after == null){
+                        return Mono.error(
+                                new NoContentException(valueOf(NO_CONTENT_IN_DB)));
+                    }
+                    boolean hasNextPage = blogPosts.size() > limit;
+                    List<BlogPost> page = hasNextPage ? blogPosts.subList(0, limit) : blogPosts;
+
+                    return Mono.just(new BlogPostPage(
+                            page.stream()
+                                    .map(this::mapToResponse)
+                                    .toList(),
+                            hasNextPage ? ContinuationToken.of(page.get(limit - 1)).encode() : null));
+                });
+    }
+
+    // The JSON of the hot BlogPosts is encoded only once, the controller writes the bytes as they are
+    @Override
+    public Mono<byte[]> getEncodedBlogPostByTitleAndCreatorEmail(String title, String email) {
+        return blogPostCache
+                .get(title, email, () -> blogPostRepository
+                        .findByTitleAndCreatorEmail(title,email))
+                .map(blogPost -> encodedResponseCache.blogPost(blogPost, this::mapToResponse))
+                .switchIfEmpty(Mono.error(
+                        new NotFoundException(valueOf(BLOG_POST_NOT_FOUND))));
+    }
+
+    @Override
+    public Mono<byte[]> getEncodedFirstBlogPostPage(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT){
+            return Mono.error(new BadRequestException(valueOf(PAGE_LIMIT_INVALID)));
+        }
+        return encodedResponseCache.firstPage(limit, () -> getBlogPostPage(limit, null));
+    }
+
+    // A conditional request only needs the version: from the cache, or else from the version index.
+    // Otherwise the BlogPost is loaded into the cache anyway, as its content is sent right after.
+    @Override
+    public Mono<CacheValidator> getBlogPostValidator(String title, String email, boolean onlyVersion) {
+        Mono<CacheValidator> validator = onlyVersion
+                ? blogPostCache.getIfPresent(title, email)
+                        .map(CacheValidator::of)
+                        .switchIfEmpty(Mono.defer(() -> blogPostRepository
+                                .findVersionByTitleAndCreatorEmail(title,email)
+                                .map(CacheValidator::of)))
+                : blogPostCache.get(title, email, () -> blogPostRepository
+                                .findByTitleAndCreatorEmail(title,email))
+                        .map(CacheValidator::of);
+
+        return validator
+                .switchIfEmpty(Mono.error(
+                        new NotFoundException(valueOf(BLOG_POST_NOT_FOUND))));
+    }
+
+    // Empty, if there are no BlogPosts at all
+    @Override
+    public Mono<CacheValidator> getAllBlogPostsValidator() {
         return blogPostRepository
-                .findAllByTags(stream(tags)
-                        .map(mytags ->
-                                Tags.valueOf(mytags.toUpperCase()))
-                        .collect(Collectors.toSet()))
-                .map(response -> new BlogPostResponse(
-                        response.getTitle(),
-                        response.getContent(),
-                        response.getCreatorEmail(),
-                        response.getTags().stream()
-                                .map(Enum::toString)
-                                .toArray(String[]::new)))
+                .findCollectionVersion()
+                .map(CacheValidator::of);
+    }
+
+    @Override
+    public Flux<BlogPostResponse> getAllBlogPostsWithTags(String[] tags, String match) {
+        return Flux.defer(() -> blogPostRepository
+                        .findAllByTagMatch(toTags(tags), toTagMatch(match)))
+                .map(this::mapToResponse)
+                .switchIfEmpty(Mono.error(
+                        new NotFoundException(valueOf(BLOG_POST_WITH_THESE_TAGS_NOT_FOUND))));
+    }
+
+    @Override
+    public Flux<BlogPostSummaryResponse> getAllBlogPostSummaries(int excerptLength) {
+        if (excerptLength < 0 || excerptLength > MAX_EXCERPT_LENGTH){
+            return Flux.error(new BadRequestException(valueOf(EXCERPT_LENGTH_INVALID)));
+        }
+        return blogPostRepository
+                .findAllSummaries(excerptLength)
+                .map(this::mapToSummaryResponse)
+                .switchIfEmpty(Mono.error(
+                        new NoContentException(valueOf(NO_CONTENT_IN_DB))));
+    }
+
+    @Override
+    public Flux<BlogPostSummaryResponse> getAllBlogPostSummariesWithTags(String[] tags, String match, int excerptLength) {
+        if (excerptLength < 0 || excerptLength > MAX_EXCERPT_LENGTH){
+            return Flux.error(new BadRequestException(valueOf(EXCERPT_LENGTH_INVALID)));
+        }
+        return Flux.defer(() -> blogPostRepository
+                        .findAllSummariesByTagMatch(toTags(tags), toTagMatch(match), excerptLength))
+                .map(this::mapToSummaryResponse)
                 .switchIfEmpty(Mono.error(
                         new NotFoundException(valueOf(BLOG_POST_WITH_THESE_TAGS_NOT_FOUND))));
     }
 
     @Override
     public Mono<BlogPostResponse> updateBlogPost(BlogPostRequestUpdate blogPostRequest, String creatorEmail) {
+        BlogPost changes = new BlogPost(
+                null,
+                blogPostRequest.newTitle(),
+                blogPostRequest.content(),
+                IDateTimeCreator.createDateTime(),
+                creatorEmail,
+                stream(blogPostRequest.tags())
+                        .map(request -> Tags.valueOf(request.toUpperCase()))
+                        .collect(Collectors.toSet()));
+
         return blogPostRepository
-                .existsBlogPostByTitleAndCreatorEmail(
+                .findAndModifyByTitleAndCreatorEmail(
                         blogPostRequest.oldTitle(),
-                        creatorEmail)
-                .flatMap(exists -> {
-                    if (!exists){
-                        return Mono.error(new BadRequestException(valueOf(BLOG_POST_NOT_FOUND)));
-                    }
-                    Mono<BlogPost> requestedBlogPost = blogPostRepository
-                            .findByTitleAndCreatorEmail(
-                                    blogPostRequest.oldTitle(),
-                                    creatorEmail);
-                    return requestedBlogPost
-                            .flatMap(update -> {
-                                update.setTitle(blogPostRequest.newTitle());
-                                update.setContent(blogPostRequest.content());
-                                update.setPublishedAt(IDateTimeCreator.createDateTime());
-                                update.setTags(stream(blogPostRequest.tags())
-                                        .map(request -> Tags.valueOf(request.toUpperCase()))
-                                        .collect(Collectors.toSet()));
-
-                                return blogPostRepository
-                                        .save(update)
-                                        .map(response -> new BlogPostResponse(
-                                                response.getTitle(),
-                                                response.getContent(),
-                                                response.getCreatorEmail(),
-                                                response.getTags().stream()
-                                                        .map(Enum::toString)
-                                                        .toArray(String[]::new)))
-                                        .log();
-                            });
-                });
+                        creatorEmail,
+                        blogPostRequest.version(),
+                        changes)
+                .map(this::mapToResponse)
+                .onErrorMap(DuplicateKeyException.class, duplicate ->
+                        new BadRequestException(valueOf(BLOG_POST_ALREADY_EXISTS)))
+                // Only a failed update pays for a second round trip, to tell "gone" from "outdated"
+                .switchIfEmpty(Mono.defer(() -> blogPostRepository
+                        .existsBlogPostByTitleAndCreatorEmail(
+                                blogPostRequest.oldTitle(),
+                                creatorEmail)
+                        .flatMap(exists -> Mono.<BlogPostResponse>error(exists
+                                ? new ConflictException(valueOf(BLOG_POST_VERSION_CONFLICT))
+                                : new BadRequestException(valueOf(BLOG_POST_NOT_FOUND))))))
+                // Invalidate before the caller sees the result, so its next read can't be outdated
+                .doOnSuccess(updated -> invalidateUpdatedBlogPost(blogPostRequest, creatorEmail))
+                .doOnError(error -> invalidateUpdatedBlogPost(blogPostRequest, creatorEmail))
+                .log();
+    }
+
+    @Override
+    public Flux<BulkItemResult> updateBlogPosts(Flux<BlogPostRequestUpdate> blogPostRequests, String email) {
+        return blogPostRequests
+                .index()
+                .buffer(BULK_CHUNK_SIZE)
+                .concatMap(chunk -> updateChunk(chunk, email));
     }
 
     @Override
     public Mono<Void> deleteBlogPostByTitleAndCreatorEmail(String title, String email) {
         return blogPostRepository
-                .existsBlogPostByTitleAndCreatorEmail(title,email)
-                .flatMap(exists -> {
-                    if (!exists){
-                        return Mono.error(
+                .deleteBlogPostByTitleAndCreatorEmail(title,email)
+                .flatMap(deleted -> {
+                    if (deleted == 0){
+                        return Mono.<Void>error(
                                 new BadRequestException(valueOf(BLOG_POST_NOT_FOUND)));
                     }
-                    return blogPostRepository
-                            .deleteBlogPostByTitleAndCreatorEmail(title,email)
-                            .log();
+                    return Mono.<Void>empty();
+                })
+                .doOnSuccess(deleted -> invalidateDeletedBlogPost(title,email))
+                .doOnError(error -> invalidateDeletedBlogPost(title,email))
+                .log();
+    }
+
+    private Flux<BulkItemResult> createChunk(List<Tuple2<Long, BlogPostRequest>> chunk, String email) {
+        String publishedAt = IDateTimeCreator.createDateTime();
+        BulkItemStatus[] statuses = new BulkItemStatus[chunk.size()];
+        List<BlogPost> blogPosts = new ArrayList<>();
+        // position in the chunk of every write
+        List<Integer> positions = new ArrayList<>();
+
+        for (int position = 0; position < chunk.size(); position++) {
+            BlogPostRequest request = chunk.get(position).getT2();
+            Set<Tags> tags = toValidTags(request.tags());
+            if (isBlank(request.title()) || isBlank(request.content()) || tags == null){
+                statuses[position] = BulkItemStatus.INVALID;
+                continue;
+            }
+            blogPosts.add(new BlogPost(
+                    UUID.randomUUID(),
+                    request.title(),
+                    request.content(),
+                    publishedAt,
+                    email,
+                    tags));
+            positions.add(position);
+            statuses[position] = BulkItemStatus.CREATED;
+        }
+
+        return blogPostRepository
+                .bulkInsert(blogPosts)
+                .map(outcome -> {
+                    markFailedWrites(outcome, positions, statuses);
+                    return bulkItemResults(chunk, statuses, BlogPostRequest::title);
+                })
+                .doOnSuccess(results -> encodedResponseCache.invalidateFirstPages())
+                .flatMapIterable(Function.identity());
+    }
+
+    private Flux<BulkItemResult> updateChunk(List<Tuple2<Long, BlogPostRequestUpdate>> chunk, String email) {
+        String publishedAt = IDateTimeCreator.createDateTime();
+        BulkItemStatus[] statuses = new BulkItemStatus[chunk.size()];
+        List<BlogPostUpdate> updates = new ArrayList<>();
+        // position in the chunk of every write
+        List<Integer> positions = new ArrayList<>();
+
+        for (int position = 0; position < chunk.size(); position++) {
+            BlogPostRequestUpdate request = chunk.get(position).getT2();
+            Set<Tags> tags = toValidTags(request.tags());
+            if (isBlank(request.oldTitle()) || isBlank(request.newTitle()) || isBlank(request.content()) || tags == null){
+                statuses[position] = BulkItemStatus.INVALID;
+                continue;
+            }
+            updates.add(new BlogPostUpdate(
+                    request.oldTitle(),
+                    request.version(),
+                    new BlogPost(
+                            null,
+                            request.newTitle(),
+                            request.content(),
+                            publishedAt,
+                            email,
+                            tags)));
+            positions.add(position);
+            statuses[position] = BulkItemStatus.UPDATED;
+        }
+
+        return blogPostRepository
+                .bulkUpdate(email, updates)
+                .flatMap(outcome -> {
+                    markFailedWrites(outcome, positions, statuses);
+                    // The BulkWriteResult only counts the matches, we only look closer, if some are missing
+                    if (outcome.matchedCount() == updates.size() - outcome.errors().size()){
+                        return Mono.just(statuses);
+                    }
+                    return markUnmatchedUpdates(email, publishedAt, updates, positions, statuses);
+                })
+                .map(marked -> bulkItemResults(chunk, marked, BlogPostRequestUpdate::oldTitle))
+                // Invalidate before the caller sees the results, so its next read can't be outdated
+                .doOnSuccess(results -> invalidateUpdatedBlogPosts(updates, email))
+                .doOnError(error -> invalidateUpdatedBlogPosts(updates, email))
+                .flatMapIterable(Function.identity());
+    }
+
+    private static void markFailedWrites(BulkWriteOutcome outcome, List<Integer> positions, BulkItemStatus[] statuses) {
+        outcome.errors().forEach(error -> statuses[positions.get(error.getIndex())] =
+                error.getCode() == DUPLICATE_KEY ? BulkItemStatus.DUPLICATE : BulkItemStatus.FAILED);
+    }
+
+    // An update went through, if its new title carries the publishedAt of this chunk (and the next version).
+    // Otherwise the old title tells "outdated" from "gone", all with one covered query for the chunk.
+    private Mono<BulkItemStatus[]> markUnmatchedUpdates(String email,
+                                                       String publishedAt,
+                                                       List<BlogPostUpdate> updates,
+                                                       List<Integer> positions,
+                                                       BulkItemStatus[] statuses) {
+        Set<String> titles = new HashSet<>();
+        updates.forEach(update -> {
+            titles.add(update.title());
+            titles.add(update.changes().getTitle());
+        });
+
+        return blogPostRepository
+                .findVersionsByCreatorEmailAndTitleIn(email, titles)
+                .collectMap(BlogPostVersion::getTitle)
+                .map(found -> {
+                    for (int write = 0; write < updates.size(); write++) {
+                        int position = positions.get(write);
+                        if (statuses[position] != BulkItemStatus.UPDATED){
+                            continue;
+                        }
+                        BlogPostUpdate update = updates.get(write);
+                        BlogPostVersion updated = found.get(update.changes().getTitle());
+                        boolean applied = updated != null
+                                && publishedAt.equals(updated.getPublishedAt())
+                                && (update.version() == null || Long.valueOf(update.version() + 1).equals(updated.getVersion()));
+                        if (!applied){
+                            statuses[position] = found.containsKey(update.title())
+                                    ? BulkItemStatus.CONFLICT
+                                    : BulkItemStatus.NOT_FOUND;
+                        }
+                    }
+                    return statuses;
+                });
+    }
+
+    private static <T> List<BulkItemResult> bulkItemResults(List<Tuple2<Long, T>> chunk,
+                                                            BulkItemStatus[] statuses,
+                                                            Function<T, String> title) {
+        List<BulkItemResult> results = new ArrayList<>(chunk.size());
+        for (int position = 0; position < chunk.size(); position++) {
+            results.add(new BulkItemResult(
+                    chunk.get(position).getT1(),
+                    title.apply(chunk.get(position).getT2()),
+                    statuses[position]));
+        }
+        return results;
+    }
+
+    private void invalidateUpdatedBlogPosts(List<BlogPostUpdate> updates, String email) {
+        updates.forEach(update -> {
+            blogPostCache.invalidate(update.title(), email);
+            blogPostCache.invalidate(update.changes().getTitle(), email);
+        });
+        encodedResponseCache.invalidateFirstPages();
+    }
+
+    private void invalidateUpdatedBlogPost(BlogPostRequestUpdate blogPostRequest, String creatorEmail) {
+        blogPostCache.invalidate(blogPostRequest.oldTitle(), creatorEmail);
+        blogPostCache.invalidate(blogPostRequest.newTitle(), creatorEmail);
+        encodedResponseCache.invalidateFirstPages();
+    }
+
+    private void invalidateDeletedBlogPost(String title, String email) {
+        blogPostCache.invalidate(title,email);
+        encodedResponseCache.invalidateFirstPages();
+    }
+
+    private Set<Tags> toTags(String[] tags) {
+        try {
+            return stream(tags)
+                    .map(mytags ->
+                            Tags.valueOf(mytags.toUpperCase()))
+                    .collect(Collectors.toSet());
+        } catch (IllegalArgumentException unknownTag) {
+            throw new BadRequestException(valueOf(BLOG_POST_TAG_DOES_NOT_EXISTS));
+        }
+    }
+
+    // null, if the tags are missing or one of them doesn't exist
+    private Set<Tags> toValidTags(String[] tags) {
+        if (tags == null){
+            return null;
+        }
+        try {
+            return toTags(tags);
+        } catch (BadRequestException unknownTag) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private TagMatch toTagMatch(String match) {
+        try {
+            return TagMatch.valueOf(match.toUpperCase());
+        } catch (IllegalArgumentException unknownMatch) {
+            throw new BadRequestException(valueOf(TAG_MATCH_INVALID));
+        }
+    }
+
+    private BlogPostResponse mapToResponse(BlogPost blogPost) {
+        return new BlogPostResponse(
+                blogPost.getTitle(),
+                blogPost.getContent(),
+                blogPost.getCreatorEmail(),
+                blogPost.getTags().stream()
+                        .map(Enum::toString)
+                        .toArray(String[]::new),
+                blogPost.getVersion());
+    }
 
-                }).log();
+    private BlogPostSummaryResponse mapToSummaryResponse(BlogPostSummary blogPostSummary) {
+        return new BlogPostSummaryResponse(
+                blogPostSummary.getTitle(),
+                blogPostSummary.getCreatorEmail(),
+                blogPostSummary.getTags().stream()
+                        .map(Enum::toString)
+                        .toArray(String[]::new),
+                blogPostSummary.getPublishedAt(),
+                blogPostSummary.getExcerpt());
     }
 }
\ No newline at end of file
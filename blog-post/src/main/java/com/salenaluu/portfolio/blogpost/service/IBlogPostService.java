@@ -1,20 +1,33 @@
 package com.salenaluu.portfolio.blogpost.service;
 
+import com.salenaluu.portfolio.blogpost.utils.conditional.CacheValidator;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostPage;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequestUpdate;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostSummaryResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BulkItemResult;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface IBlogPostService {
     /* ===== CREATE =====*/
     Mono<BlogPostResponse> createBlogPost(BlogPostRequest blogPostRequest, String email);
+    Flux<BulkItemResult> createBlogPosts(Flux<BlogPostRequest> blogPostRequests, String email);
     /* ===== READ ===== */
     Mono<BlogPostResponse> getBlogPostByTitleAndCreatorEmail(String title, String email);
     Flux<BlogPostResponse> getAllBlogPosts();
-    Flux<BlogPostResponse> getAllBlogPostsWithTags(String[] tags);
+    Mono<BlogPostPage> getBlogPostPage(int limit, String continuationToken);
+    Mono<byte[]> getEncodedBlogPostByTitleAndCreatorEmail(String title, String email);
+    Mono<byte[]> getEncodedFirstBlogPostPage(int limit);
+    Mono<CacheValidator> getBlogPostValidator(String title, String email, boolean onlyVersion);
+    Mono<CacheValidator> getAllBlogPostsValidator();
+    Flux<BlogPostResponse> getAllBlogPostsWithTags(String[] tags, String match);
+    Flux<BlogPostSummaryResponse> getAllBlogPostSummaries(int excerptLength);
+    Flux<BlogPostSummaryResponse> getAllBlogPostSummariesWithTags(String[] tags, String match, int excerptLength);
     /* ===== UPDATE ===== */
     Mono<BlogPostResponse> updateBlogPost(BlogPostRequestUpdate blogPostRequest, String email);
+    Flux<BulkItemResult> updateBlogPosts(Flux<BlogPostRequestUpdate> blogPostRequests, String email);
     /* ===== DELETE ===== */
     Mono<Void> deleteBlogPostByTitleAndCreatorEmail(String title, String email);
 }
\ No newline at end of file
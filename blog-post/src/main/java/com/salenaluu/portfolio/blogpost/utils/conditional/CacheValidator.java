@@ -0,0 +1,50 @@
+package com.salenaluu.portfolio.blogpost.utils.conditional;
+
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostCollectionVersion;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// ETag and Last-Modified of a response. The version alone isn't enough, a deleted and recreated
+// BlogPost starts again with version 0, so its publishedAt is part of the ETag.
+// A list has no Last-Modified (null): the newest publishedAt doesn't move with a delete, it even goes back, when the
+// newest BlogPost is deleted. Only its ETag (count, versions, newest publishedAt) changes with every write.
+public record CacheValidator(String eTag, Instant lastModified) {
+    private static final DateTimeFormatter PUBLISHED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static CacheValidator of(BlogPost blogPost){
+        return of(blogPost.getVersion(), blogPost.getPublishedAt());
+    }
+
+    public static CacheValidator of(BlogPostVersion blogPostVersion){
+        return of(blogPostVersion.getVersion(), blogPostVersion.getPublishedAt());
+    }
+
+    public static CacheValidator of(BlogPostCollectionVersion collectionVersion){
+        return new CacheValidator(
+                collectionVersion.getCount() + "-" + collectionVersion.getVersions() + "-"
+                        + digits(collectionVersion.getLastModified()),
+                null);
+    }
+
+    private static CacheValidator of(Long version, String publishedAt){
+        return new CacheValidator(
+                (version == null ? 0 : version) + "-" + digits(publishedAt),
+                instant(publishedAt));
+    }
+
+    private static String digits(String publishedAt){
+        return publishedAt == null ? "0" : publishedAt.replaceAll("\\D", "");
+    }
+
+    // publishedAt is the local time of the instance, which wrote the BlogPost (see IDateTimeCreator)
+    private static Instant instant(String publishedAt){
+        return publishedAt == null
+                ? Instant.EPOCH
+                : LocalDateTime.parse(publishedAt, PUBLISHED_AT).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,11 @@
+package com.salenaluu.portfolio.blogpost.utils.enums;
+
+public enum BulkItemStatus {
+    CREATED,
+    UPDATED,
+    DUPLICATE,
+    INVALID,
+    NOT_FOUND,
+    CONFLICT,
+    FAILED
+}
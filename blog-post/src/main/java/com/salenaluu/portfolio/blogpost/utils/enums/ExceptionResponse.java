@@ -3,9 +3,14 @@ package com.salenaluu.portfolio.blogpost.utils.enums;
 public enum ExceptionResponse {
     BLOG_POST_NOT_FOUND,
     BLOG_POST_ALREADY_EXISTS,
+    BLOG_POST_VERSION_CONFLICT,
     BLOG_POST_TAG_DOES_NOT_EXISTS,
     BLOG_POST_WITH_THESE_TAGS_NOT_FOUND,
     NO_CONTENT_IN_DB,
+    PAGE_LIMIT_INVALID,
+    CONTINUATION_TOKEN_INVALID,
+    EXCERPT_LENGTH_INVALID,
+    TAG_MATCH_INVALID,
     REQUESTED_MODEL_INVALID,
     REQUESTED_MODEL_NOT_EXCEPTED,
     REQUEST_NOT_EXCEPTED
@@ -0,0 +1,11 @@
+package com.salenaluu.portfolio.blogpost.utils.enums;
+
+// How the requested Tags of /filter are matched against the Tags of a BlogPost
+public enum TagMatch {
+    // at least one of the requested Tags
+    ANY,
+    // all requested Tags, the BlogPost may have more
+    ALL,
+    // exactly the requested Tags
+    EXACT
+}
\ No newline at end of file
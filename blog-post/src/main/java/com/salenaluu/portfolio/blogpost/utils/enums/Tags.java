@@ -1,7 +1,22 @@
 package com.salenaluu.portfolio.blogpost.utils.enums;
 
+import java.util.Set;
+
+// New Tags must be appended at the end, the ordinal is the bit of the Tag in a stored tagMask.
 public enum Tags {
     FRESH,
     FUNNY,
-    SPRING
+    SPRING;
+
+    public int mask(){
+        return 1 << ordinal();
+    }
+
+    public static int maskOf(Set<Tags> tags){
+        int mask = 0;
+        for (Tags tag : tags) {
+            mask |= tag.mask();
+        }
+        return mask;
+    }
 }
\ No newline at end of file
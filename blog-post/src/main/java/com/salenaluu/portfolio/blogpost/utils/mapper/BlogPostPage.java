@@ -0,0 +1,6 @@
+package com.salenaluu.portfolio.blogpost.utils.mapper;
+
+import java.util.List;
+
+public record BlogPostPage(List<BlogPostResponse> blogPosts,
+                           String continuationToken){}
\ No newline at end of file
@@ -3,4 +3,5 @@ package com.salenaluu.portfolio.blogpost.utils.mapper;
 public record BlogPostRequestUpdate(String oldTitle,
                                     String newTitle,
                                     String content,
-                                    String[] tags) {}
\ No newline at end of file
+                                    String[] tags,
+                                    Long version) {}
\ No newline at end of file
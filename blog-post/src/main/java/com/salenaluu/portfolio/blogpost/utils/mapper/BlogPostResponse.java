@@ -3,4 +3,5 @@ package com.salenaluu.portfolio.blogpost.utils.mapper;
 public record BlogPostResponse(String title,
                                String content,
                                String email,
-                               String[] tags){}
\ No newline at end of file
+                               String[] tags,
+                               Long version){}
\ No newline at end of file
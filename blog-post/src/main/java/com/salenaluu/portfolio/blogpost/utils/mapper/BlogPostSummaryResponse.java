@@ -0,0 +1,7 @@
+package com.salenaluu.portfolio.blogpost.utils.mapper;
+
+public record BlogPostSummaryResponse(String title,
+                                      String email,
+                                      String[] tags,
+                                      String publishedAt,
+                                      String excerpt){}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.salenaluu.portfolio.blogpost.utils.mapper;
+
+import com.salenaluu.portfolio.blogpost.utils.enums.BulkItemStatus;
+
+// index is the position of the item in the request
+public record BulkItemResult(long index,
+                             String title,
+                             BulkItemStatus status){}
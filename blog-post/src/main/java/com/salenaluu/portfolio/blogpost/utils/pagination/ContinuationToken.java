@@ -0,0 +1,35 @@
+package com.salenaluu.portfolio.blogpost.utils.pagination;
+
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Opaque cursor of the last BlogPost on a page, the next page starts right after it.
+public record ContinuationToken(String publishedAt, UUID id) {
+    private static final String SEPARATOR = "|";
+
+    public static ContinuationToken of(BlogPost blogPost){
+        return new ContinuationToken(blogPost.getPublishedAt(), blogPost.getId());
+    }
+
+    // Throws an IllegalArgumentException, if the token wasn't created by encode()
+    public static ContinuationToken decode(String token){
+        String decoded = new String(Base64.getUrlDecoder().decode(token), UTF_8);
+        int separator = decoded.lastIndexOf(SEPARATOR);
+        if (separator < 0){
+            throw new IllegalArgumentException("Continuation token without separator");
+        }
+        return new ContinuationToken(
+                decoded.substring(0, separator),
+                UUID.fromString(decoded.substring(separator + 1)));
+    }
+
+    public String encode(){
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((publishedAt + SEPARATOR + id).getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,105 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequestUpdate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlogPostCacheTest {
+    @Mock
+    IBlogPostRepository blogPostRepository;
+
+    String title = "The Weather Girls in New York City";
+    String email = "soul-sisters@gmail.com";
+
+    @Test
+    @DisplayName("should never return an outdated BlogPost, once a local update has completed")
+    void should_never_return_outdated_BlogPost_after_local_update() throws Exception {
+        // Our "database", every read copies the current state and answers after a random delay.
+        // So there are always slow loads in flight, which started before the latest update.
+        AtomicReference<BlogPost> database = new AtomicReference<>(blogPostWithVersion(0L));
+        given(blogPostRepository.findByTitleAndCreatorEmail(title,email))
+                .willAnswer(invocation -> Mono.fromCallable(database::get)
+                        .delayElement(Duration.ofMillis(ThreadLocalRandom.current().nextInt(5))));
+        given(blogPostRepository.findAndModifyByTitleAndCreatorEmail(eq(title),eq(email),any(),any()))
+                .willAnswer(invocation -> Mono.fromCallable(() -> database.updateAndGet(current ->
+                        blogPostWithVersion(current.getVersion() + 1))));
+
+        BlogPostServiceImpl blogPostService = new BlogPostServiceImpl(
+                blogPostRepository,
+                new BlogPostCache(100, Duration.ofMinutes(5)),
+                new EncodedResponseCache(false, Duration.ofSeconds(10), new ObjectMapper()));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        List<Future<?>> backgroundReads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            backgroundReads.add(readers.submit(() -> {
+                while (running.get()) {
+                    blogPostService.getBlogPostByTitleAndCreatorEmail(title,email).block();
+                }
+            }));
+        }
+
+        try {
+            for (long version = 1; version <= 200; version++) {
+                blogPostService.updateBlogPost(
+                        new BlogPostRequestUpdate(title, title, "It's raining men, hallelujah!", new String[]{"fresh"}, null),
+                        email).block();
+
+                Long readVersion = blogPostService
+                        .getBlogPostByTitleAndCreatorEmail(title,email)
+                        .block()
+                        .version();
+                assertThat(readVersion)
+                        .as("read after update to version %d", version)
+                        .isGreaterThanOrEqualTo(version);
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+            assertThat(readers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+        for (Future<?> backgroundRead : backgroundReads) {
+            backgroundRead.get();
+        }
+    }
+
+    private BlogPost blogPostWithVersion(Long version) {
+        BlogPost blogPost = new BlogPost(
+                UUID.nameUUIDFromBytes(title.getBytes()),
+                title,
+                "It's raining men a classic song of the 80s",
+                IDateTimeCreator.createDateTime(),
+                email,
+                Set.of(Tags.FRESH));
+        blogPost.setVersion(version);
+        return blogPost;
+    }
+}
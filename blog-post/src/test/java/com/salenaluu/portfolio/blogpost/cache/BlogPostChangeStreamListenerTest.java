@@ -0,0 +1,207 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Change streams need a replica set, the container runs MongoDB as a single-node replica set.
+// Writes through the mongoTemplate play the role of another blog-post instance, they bypass our cache.
+@DataMongoTest
+@Testcontainers
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({BlogPostCache.class, EncodedResponseCache.class, BlogPostChangeStreamListener.class})
+class BlogPostChangeStreamListenerTest {
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer(DockerImageName.parse("mongo:5.0"));
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+    }
+
+    @Autowired
+    IBlogPostRepository blogPostRepository;
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+    @Autowired
+    BlogPostCache blogPostCache;
+    @Autowired
+    BlogPostChangeStreamListener changeStreamListener;
+
+    // Loads from the database per title, a cache hit doesn't count
+    Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    BlogPost blogPost;
+    BlogPost otherBlogPost;
+
+    @BeforeEach
+    void setup() throws InterruptedException {
+        blogPost = blogPostRepository.insert(blogPost("The Weather Girls in New York City")).block();
+        otherBlogPost = blogPostRepository.insert(blogPost("It's Raining Men")).block();
+
+        changeStreamListener.start();
+        awaitListening();
+    }
+
+    @AfterEach
+    void tearDown(){
+        changeStreamListener.start();
+        blogPostRepository.deleteAll().block();
+        blogPostCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("should invalidate the cached BlogPost, when another instance updates it")
+    void should_invalidate_cached_BlogPost_on_remote_update() throws InterruptedException {
+        assertThat(cachedContent(blogPost)).isEqualTo("content");
+
+        remoteUpdate(blogPost, "updated content");
+
+        assertThat(eventually(() -> "updated content".equals(cachedContent(blogPost)))).isTrue();
+    }
+
+    @Test
+    @DisplayName("should invalidate the cached BlogPost, when another instance deletes it")
+    void should_invalidate_cached_BlogPost_on_remote_delete() throws InterruptedException {
+        assertThat(cachedContent(blogPost)).isEqualTo("content");
+
+        mongoTemplate.remove(Query.query(where("_id").is(blogPost.getId())), BlogPost.class).block();
+
+        assertThat(eventually(() -> cached(blogPost) == null)).isTrue();
+    }
+
+    @Test
+    @DisplayName("should replay the changes, which happened while reconnecting, with the resume token")
+    void should_resume_after_reconnect_without_missing_events() throws InterruptedException {
+        assertThat(cachedContent(blogPost)).isEqualTo("content");
+        assertThat(cachedContent(otherBlogPost)).isEqualTo("content");
+        int otherLoads = loads(otherBlogPost);
+
+        changeStreamListener.stop();
+        remoteUpdate(blogPost, "updated while disconnected");
+        changeStreamListener.start();
+
+        assertThat(eventually(() -> "updated while disconnected".equals(cachedContent(blogPost)))).isTrue();
+        // Resumed and not flushed, the unchanged BlogPost is still cached
+        cachedContent(otherBlogPost);
+        assertThat(loads(otherBlogPost)).isEqualTo(otherLoads);
+    }
+
+    @Test
+    @DisplayName("should flush the whole cache, when the resume token is lost")
+    void should_flush_cache_when_resume_token_is_lost() throws InterruptedException {
+        assertThat(cachedContent(otherBlogPost)).isEqualTo("content");
+        int otherLoads = loads(otherBlogPost);
+
+        changeStreamListener.stop();
+        // A token, the server can't resume from
+        ReflectionTestUtils.setField(changeStreamListener, "resumeToken",
+                new BsonDocument("_data", new BsonString("00")));
+        changeStreamListener.start();
+
+        assertThat(eventually(() -> {
+            cachedContent(otherBlogPost);
+            return loads(otherBlogPost) > otherLoads;
+        })).isTrue();
+    }
+
+    // The cursor is opened asynchronously, we wait until a remote change reaches our cache
+    private void awaitListening() throws InterruptedException {
+        BlogPost warmUp = blogPostRepository.insert(blogPost("Warm up")).block();
+        assertThat(eventually(() -> {
+            String content = UUID.randomUUID().toString();
+            cachedContent(warmUp);
+            remoteUpdate(warmUp, content);
+            sleep(100);
+            return content.equals(cachedContent(warmUp));
+        })).isTrue();
+    }
+
+    private BlogPost cached(BlogPost blogPost) {
+        return blogPostCache
+                .get(blogPost.getTitle(), blogPost.getCreatorEmail(), () -> {
+                    loads.computeIfAbsent(blogPost.getTitle(), title -> new AtomicInteger()).incrementAndGet();
+                    return blogPostRepository.findByTitleAndCreatorEmail(blogPost.getTitle(), blogPost.getCreatorEmail());
+                })
+                .block(Duration.ofSeconds(5));
+    }
+
+    private String cachedContent(BlogPost blogPost) {
+        BlogPost cached = cached(blogPost);
+        return cached == null ? null : cached.getContent();
+    }
+
+    private int loads(BlogPost blogPost) {
+        return loads.getOrDefault(blogPost.getTitle(), new AtomicInteger()).get();
+    }
+
+    private void remoteUpdate(BlogPost blogPost, String content) {
+        mongoTemplate
+                .updateFirst(Query.query(where("_id").is(blogPost.getId())),
+                        new Update().set("content", content),
+                        BlogPost.class)
+                .block();
+    }
+
+    private static BlogPost blogPost(String title) {
+        return new BlogPost(
+                UUID.randomUUID(),
+                title,
+                "content",
+                "2022-06-01 12:00:00",
+                "soul-sisters@gmail.com",
+                Set.of(Tags.SPRING));
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()){
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.salenaluu.portfolio.blogpost.cache;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+// Run it with: ./mvnw test -Dtest=EncodedResponseBenchmarkTest -Dbenchmark=true
+// Compares a cached /find as it is written today (BlogPostResponse + Jackson) with the EncodedResponseCache.
+// Both read the same BlogPost from the BlogPostCache, so only the way to the response buffer differs.
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EncodedResponseBenchmarkTest {
+    private static final int WARM_UP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    String title = "The Weather Girls in New York City";
+    String email = "soul-sisters@gmail.com";
+
+    @Test
+    @DisplayName("should allocate less and be faster per request, when the encoded JSON is cached")
+    void should_allocate_less_and_be_faster_with_encoded_responses() {
+        // .log() of the service would dominate both paths
+        ((Logger) LoggerFactory.getLogger("reactor")).setLevel(Level.WARN);
+
+        IBlogPostRepository blogPostRepository = mock(IBlogPostRepository.class);
+        given(blogPostRepository.findByTitleAndCreatorEmail(title,email))
+                .willReturn(Mono.just(new BlogPost(
+                        UUID.randomUUID(),
+                        title,
+                        "It's raining men! Hallelujah! ".repeat(100),
+                        "2022-06-01 12:00:00",
+                        email,
+                        Set.of(Tags.SPRING, Tags.FUNNY))));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        BlogPostServiceImpl blogPostService = new BlogPostServiceImpl(
+                blogPostRepository,
+                new BlogPostCache(100, Duration.ofMinutes(5)),
+                new EncodedResponseCache(true, Duration.ofSeconds(10), objectMapper));
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper);
+        DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+        ResolvableType responseType = ResolvableType.forClass(BlogPostResponse.class);
+
+        Supplier<DataBuffer> encodedPerRequest = () -> encoder.encodeValue(
+                blogPostService.getBlogPostByTitleAndCreatorEmail(title,email).block(),
+                bufferFactory, responseType, MediaType.APPLICATION_JSON, Collections.emptyMap());
+        Supplier<DataBuffer> cachedBytes = () -> bufferFactory.wrap(
+                blogPostService.getEncodedBlogPostByTitleAndCreatorEmail(title,email).block());
+
+        Result current = measure(encodedPerRequest);
+        Result encoded = measure(cachedBytes);
+        log.info("encode per request: {} ns/op {} B/op", current.nanosPerOp(), current.bytesPerOp());
+        log.info("cached JSON bytes:  {} ns/op {} B/op", encoded.nanosPerOp(), encoded.bytesPerOp());
+
+        assertThat(encoded.bytesPerOp())
+                .isLessThan(current.bytesPerOp() / 2);
+        assertThat(encoded.nanosPerOp())
+                .isLessThan(current.nanosPerOp());
+    }
+
+    private static Result measure(Supplier<DataBuffer> request) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARM_UP; i++) {
+            DataBufferUtils.release(request.get());
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            DataBufferUtils.release(request.get());
+        }
+        long nanos = System.nanoTime() - started;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(nanos / ITERATIONS, allocated / ITERATIONS);
+    }
+
+    private record Result(long nanosPerOp, long bytesPerOp) {}
+}
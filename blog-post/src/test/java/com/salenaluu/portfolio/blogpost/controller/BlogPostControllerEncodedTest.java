@@ -0,0 +1,92 @@
+package com.salenaluu.portfolio.blogpost.controller;
+
+import com.salenaluu.portfolio.blogpost.cache.BlogPostCache;
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
+import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockOpaqueToken;
+
+// The same reads as in BlogPostControllerTest, but answered with the bytes of the EncodedResponseCache
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@ExtendWith(SpringExtension.class)
+@Import({BlogPostServiceImpl.class, BlogPostCache.class, EncodedResponseCache.class})
+@WebFluxTest(controllers = BlogPostController.class, properties = "blog-post.cache.encoded.enabled=true")
+class BlogPostControllerEncodedTest {
+    @MockBean
+    IBlogPostRepository blogPostRepository;
+    @Autowired
+    WebTestClient webTestClient;
+
+    String baseUrl = "/api/v1/blogpost";
+
+    BlogPost blogPost = new BlogPost(
+            UUID.randomUUID(),
+            "Scooby is Back!",
+            "No way! And shaggy too ?",
+            IDateTimeCreator.createDateTime(),
+            "test@example.com",
+            Set.of(Tags.FUNNY));
+
+    @Test
+    @DisplayName("should write the encoded BlogPost as JSON by getBlogPostByTitleAndCreatorEmail()")
+    void should_write_encoded_blogPost_as_json() {
+        when(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
+                .thenReturn(Mono.just(blogPost));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken().authorities(() -> "portfolio_explorer"))
+                .get()
+                .uri(baseUrl + "/find?title={title}&creatorEmail={email}", "Scooby is Back!", "test@example.com")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Scooby is Back!")
+                .jsonPath("$.email").isEqualTo("test@example.com");
+    }
+
+    @Test
+    @DisplayName("should write the encoded first page as JSON by getBlogPostPage()")
+    void should_write_encoded_first_page_as_json() {
+        when(blogPostRepository.findPageAfter(isNull(),isNull(),eq(11)))
+                .thenReturn(Flux.just(blogPost));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken())
+                .get()
+                .uri(baseUrl + "/page?limit=10")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.blogPosts[0].title").isEqualTo("Scooby is Back!")
+                .jsonPath("$.continuationToken").doesNotExist();
+    }
+}
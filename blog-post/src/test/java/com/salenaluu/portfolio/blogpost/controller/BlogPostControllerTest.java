@@ -1,8 +1,15 @@
 package com.salenaluu.portfolio.blogpost.controller;
 
+import com.salenaluu.portfolio.blogpost.cache.BlogPostCache;
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
 import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostCollectionVersion;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
 import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
 import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
+import com.salenaluu.portfolio.blogpost.utils.conditional.CacheValidator;
+import com.salenaluu.portfolio.blogpost.utils.enums.TagMatch;
 import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
 import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
@@ -25,6 +32,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.ZonedDateTime;
 import java.util.Set;
 import java.util.UUID;
 
@@ -34,7 +42,7 @@ import static org.springframework.security.test.web.reactive.server.SecurityMock
 @ActiveProfiles("test")
 @AutoConfigureWebTestClient
 @ExtendWith(SpringExtension.class)
-@Import(BlogPostServiceImpl.class)
+@Import({BlogPostServiceImpl.class, BlogPostCache.class, EncodedResponseCache.class})
 @WebFluxTest(controllers = BlogPostController.class)
 class BlogPostControllerTest {
     @MockBean
@@ -62,14 +70,16 @@ class BlogPostControllerTest {
             "Scooby is Back!",
             "No way! And shaggy too ?",
             "test@example.com",
-            new String[]{"FUNNY"});
+            new String[]{"FUNNY"},
+            0L);
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="New BlogPosts">
     BlogPostRequestUpdate blogPostRequestUpdate = new BlogPostRequestUpdate(
             "Scooby is Back!",
             "Shaggy is back!",
             "No way! And shaggy too ?",
-            new String[]{"FUNNY"}
+            new String[]{"FUNNY"},
+            0L
     );
 
     BlogPost newBlogPost = new BlogPost(
@@ -239,6 +249,8 @@ class BlogPostControllerTest {
     @Test
     @DisplayName("should getAllBlogPosts()")
     void should_getAllBlogPosts() {
+        when(blogPostRepository.findCollectionVersion())
+                .thenReturn(Mono.empty());
         when(blogPostRepository.findAll())
                 .thenReturn(Flux.just(blogPost));
 
@@ -257,6 +269,8 @@ class BlogPostControllerTest {
     @Test
     @DisplayName("should throw exception, when BlogPost DB is empty by getAllBlogposts()")
     void should_throw_exception_when_BlogPost_DB_is_empty_by_getAllBlogposts() {
+        when(blogPostRepository.findCollectionVersion())
+                .thenReturn(Mono.empty());
         when(blogPostRepository.findAll())
                 .thenReturn(Flux.empty());
 
@@ -272,10 +286,157 @@ class BlogPostControllerTest {
                 .findAll();
     }
 
+    @Test
+    @DisplayName("should getAllBlogPosts() as summaries")
+    void should_getAllBlogPosts_as_summaries() {
+        BlogPostSummary blogPostSummary = new BlogPostSummary();
+        blogPostSummary.setTitle("Scooby is Back!");
+        blogPostSummary.setCreatorEmail("test@example.com");
+        blogPostSummary.setTags(Set.of(Tags.FUNNY));
+        when(blogPostRepository.findCollectionVersion())
+                .thenReturn(Mono.empty());
+        when(blogPostRepository.findAllSummaries(anyInt()))
+                .thenReturn(Flux.just(blogPostSummary));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken())
+                .get()
+                .uri(baseUrl + "?summary=true")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$[0].title").isEqualTo("Scooby is Back!")
+                .jsonPath("$[0].content").doesNotExist();
+
+        verify(blogPostRepository,times(1))
+                .findAllSummaries(0);
+        verify(blogPostRepository,never())
+                .findAll();
+    }
+
+    @Test
+    @DisplayName("should getBlogPostByTitleAndCreatorEmail() with ETag and Last-Modified")
+    void should_getBlogPostByTitleAndCreatorEmail_with_ETag_and_LastModified() {
+        when(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
+                .thenReturn(Mono.just(blogPost));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken().authorities(new SimpleGrantedAuthority("portfolio_explorer")))
+                .get()
+                .uri(baseUrl + "/find?title={title}&creatorEmail={email}", blogPost.getTitle(), blogPost.getCreatorEmail())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals("ETag", "\"" + CacheValidator.of(blogPost).eTag() + "\"")
+                .expectHeader().exists("Last-Modified")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Scooby is Back!");
+    }
+
+    @Test
+    @DisplayName("should answer getBlogPostByTitleAndCreatorEmail() with 304, without loading the BlogPost")
+    void should_answer_getBlogPostByTitleAndCreatorEmail_with_304_without_loading_BlogPost() {
+        BlogPostVersion blogPostVersion = new BlogPostVersion();
+        blogPostVersion.setVersion(blogPost.getVersion());
+        blogPostVersion.setPublishedAt(blogPost.getPublishedAt());
+        when(blogPostRepository.findVersionByTitleAndCreatorEmail(anyString(),anyString()))
+                .thenReturn(Mono.just(blogPostVersion));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken().authorities(new SimpleGrantedAuthority("portfolio_explorer")))
+                .get()
+                .uri(baseUrl + "/find?title={title}&creatorEmail={email}", blogPost.getTitle(), blogPost.getCreatorEmail())
+                .ifNoneMatch("\"" + CacheValidator.of(blogPost).eTag() + "\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        verify(blogPostRepository,never())
+                .findByTitleAndCreatorEmail(anyString(),anyString());
+    }
+
+    @Test
+    @DisplayName("should answer getAllBlogPosts() with 304, if no BlogPost has changed")
+    void should_answer_getAllBlogPosts_with_304_if_no_BlogPost_has_changed() {
+        BlogPostCollectionVersion collectionVersion = new BlogPostCollectionVersion();
+        collectionVersion.setCount(1);
+        collectionVersion.setVersions(0);
+        collectionVersion.setLastModified(blogPost.getPublishedAt());
+        when(blogPostRepository.findCollectionVersion())
+                .thenReturn(Mono.just(collectionVersion));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken())
+                .get()
+                .uri(baseUrl)
+                .ifNoneMatch("\"" + CacheValidator.of(collectionVersion).eTag() + "\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        verify(blogPostRepository,never())
+                .findAll();
+    }
+
+    @Test
+    @DisplayName("should answer getAllBlogPosts() with the list, if the newest BlogPost was deleted since If-Modified-Since")
+    void should_answer_getAllBlogPosts_with_list_after_delete_since_IfModifiedSince() {
+        // the newest BlogPost was deleted, the newest publishedAt went back
+        BlogPostCollectionVersion collectionVersion = new BlogPostCollectionVersion();
+        collectionVersion.setCount(1);
+        collectionVersion.setVersions(0);
+        collectionVersion.setLastModified("2022-06-01 12:00:00");
+        when(blogPostRepository.findCollectionVersion())
+                .thenReturn(Mono.just(collectionVersion));
+        when(blogPostRepository.findAll())
+                .thenReturn(Flux.just(blogPost));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken())
+                .get()
+                .uri(baseUrl)
+                // the client got the list, while the deleted BlogPost was the newest
+                .ifModifiedSince(ZonedDateTime.now())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader().valueEquals("ETag", "\"" + CacheValidator.of(collectionVersion).eTag() + "\"")
+                .expectHeader().doesNotExist("Last-Modified")
+                .expectBody()
+                .jsonPath("$[0].title").isEqualTo("Scooby is Back!");
+
+        verify(blogPostRepository,times(1))
+                .findAll();
+    }
+
+    @Test
+    @DisplayName("should getBlogPostPage()")
+    void should_getBlogPostPage() {
+        when(blogPostRepository.findPageAfter(isNull(),isNull(),eq(11)))
+                .thenReturn(Flux.just(blogPost));
+
+        webTestClient
+                .mutateWith(mockOpaqueToken())
+                .get()
+                .uri(baseUrl + "/page?limit=10")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.blogPosts[0].title").isEqualTo("Scooby is Back!")
+                .jsonPath("$.continuationToken").doesNotExist();
+
+        verify(blogPostRepository,times(1))
+                .findPageAfter(isNull(),isNull(),eq(11));
+    }
+
     @Test
     @DisplayName("should getBlogPostByTags()")
     void should_getBlogPostByTags() {
-        when(blogPostRepository.findAllByTags(any()))
+        when(blogPostRepository.findAllByTagMatch(any(),any()))
                 .thenReturn(Flux.just(blogPost));
 
         webTestClient
@@ -287,13 +448,13 @@ class BlogPostControllerTest {
                 .isOk();
 
         verify(blogPostRepository,times(1))
-                .findAllByTags(any());
+                .findAllByTagMatch(any(),eq(TagMatch.ANY));
     }
 
     @Test
     @DisplayName("should throw exception, when BlogPost wasn't found by getBlogPostByTags()")
     void should_throw_exception_when_BlogPost_was_not_found_by_getBlogPostByTags() {
-        when(blogPostRepository.findAllByTags(any()))
+        when(blogPostRepository.findAllByTagMatch(any(),any()))
                 .thenReturn(Flux.empty());
 
         webTestClient
@@ -305,7 +466,7 @@ class BlogPostControllerTest {
                 .isNotFound();
 
         verify(blogPostRepository,times(1))
-                .findAllByTags(any());
+                .findAllByTagMatch(any(),eq(TagMatch.ANY));
     }
 
     // TODO: FIX CONTROLLER PUT REQUEST
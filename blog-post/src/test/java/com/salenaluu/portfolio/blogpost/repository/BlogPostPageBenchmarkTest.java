@@ -0,0 +1,136 @@
+package com.salenaluu.portfolio.blogpost.repository;
+
+import com.mongodb.ExplainVerbosity;
+import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Sorts.descending;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Run it with: ./mvnw test -Dtest=BlogPostPageBenchmarkTest -Dbenchmark=true
+// Grows blog_post from 10k to 1M BlogPosts and measures the latency of a deep page at every size.
+@Slf4j
+@DataMongoTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BlogPostPageBenchmarkTest {
+    private static final int[] COLLECTION_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int PAGE_LIMIT = 20;
+    private static final int SAMPLES = 200;
+    private static final int BATCH_SIZE = 5_000;
+
+    @Autowired
+    IBlogPostRepository blogPostRepository;
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown(){
+        blogPostRepository
+                .deleteAll()
+                .block();
+    }
+
+    @Test
+    @DisplayName("should keep the page latency flat, while blog_post grows from 10k to 1M BlogPosts")
+    void should_keep_page_latency_flat_while_collection_grows() {
+        blogPostRepository.deleteAll().block();
+
+        Map<Integer, Long> medianNanos = new LinkedHashMap<>();
+        int inserted = 0;
+        for (int size : COLLECTION_SIZES) {
+            insertBlogPosts(inserted, size);
+            inserted = size;
+
+            // A cursor in the middle of the collection, so we page deep and not just the newest posts
+            BlogPost middle = blogPostRepository
+                    .findPageAfter(null, null, size / 2)
+                    .last()
+                    .block();
+
+            long median = medianPageNanos(middle);
+            medianNanos.put(size, median);
+            log.info("blog_post={}  median page latency={} µs  docsExamined={}",
+                    size, median / 1_000, docsExamined(middle));
+
+            // The index bounds the scan to the page itself, independent of the collection size
+            assertThat(docsExamined(middle))
+                    .isLessThanOrEqualTo(PAGE_LIMIT + 1);
+        }
+
+        // Generous factor, we only want to catch a scan that grows with the collection
+        assertThat(medianNanos.get(1_000_000))
+                .isLessThan(medianNanos.get(10_000) * 5);
+    }
+
+    private void insertBlogPosts(int from, int to) {
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        for (int batch = from; batch < to; batch += BATCH_SIZE) {
+            List<BlogPost> blogPosts = new ArrayList<>(BATCH_SIZE);
+            for (int i = batch; i < Math.min(batch + BATCH_SIZE, to); i++) {
+                blogPosts.add(new BlogPost(
+                        UUID.randomUUID(),
+                        "Benchmark post number " + i,
+                        "Content of the benchmark post number " + i,
+                        // a few BlogPosts share the same second, like in production
+                        start.plusSeconds(i / 3).format(formatter),
+                        "benchmark@gmail.com",
+                        Set.of(Tags.SPRING)));
+            }
+            mongoTemplate.insertAll(blogPosts).blockLast();
+        }
+    }
+
+    private long medianPageNanos(BlogPost after) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            blogPostRepository
+                    .findPageAfter(after.getPublishedAt(), after.getId(), PAGE_LIMIT + 1)
+                    .blockLast();
+            samples[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+
+    private long docsExamined(BlogPost after) {
+        Document explain = mongoTemplate
+                .execute(BlogPost.class, collection -> Flux.from(collection
+                        .find(or(
+                                lt("publishedAt", after.getPublishedAt()),
+                                and(eq("publishedAt", after.getPublishedAt()),
+                                        lt("_id", after.getId()))))
+                        .sort(descending("publishedAt", "_id"))
+                        .limit(PAGE_LIMIT + 1)
+                        .explain(Document.class, ExplainVerbosity.EXECUTION_STATS)))
+                .blockFirst();
+
+        return explain
+                .get("executionStats", Document.class)
+                .get("totalDocsExamined", Number.class)
+                .longValue();
+    }
+}
@@ -1,36 +1,98 @@
 package com.salenaluu.portfolio.blogpost.repository;
 
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.salenaluu.portfolio.blogpost.cache.BlogPostCache;
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
 import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostCollectionVersion;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.service.BlogPostServiceImpl;
 import com.salenaluu.portfolio.blogpost.utils.BlogPostSetupTest;
+import com.salenaluu.portfolio.blogpost.utils.enums.TagMatch;
 import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
+import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import org.bson.BsonValue;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataMongoTest
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({BlogPostServiceImpl.class, BlogPostCache.class, EncodedResponseCache.class})
 class IBlogPostRepositoryTest {
     @Autowired
     IBlogPostRepository IBlogPostRepository;
+    @Autowired
+    BlogPostServiceImpl blogPostService;
+    @Autowired
+    BlogPostCommandCounter commandCounter;
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
     @Spy
     BlogPostSetupTest blogPostSetupTest;
 
+    // Counts every command, which was sent to the blog_post collection
+    @TestConfiguration
+    static class BlogPostCommandCounter implements CommandListener {
+        private final AtomicInteger commands = new AtomicInteger();
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCounterCustomizer(){
+            return settings -> settings.addCommandListener(this);
+        }
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+            BsonValue collection = event.getCommand().get(event.getCommandName());
+            if (collection != null && collection.isString()
+                    && "blog_post".equals(collection.asString().getValue())) {
+                commands.incrementAndGet();
+            }
+        }
+
+        void reset(){
+            commands.set(0);
+        }
+
+        int count(){
+            return commands.get();
+        }
+    }
+
     @BeforeEach
     void setup(){
         IBlogPostRepository
                 .saveAll(blogPostSetupTest.blogPostList())
                 .blockLast();
+        commandCounter.reset();
     }
 
     @AfterEach
@@ -83,13 +145,14 @@ class IBlogPostRepositoryTest {
     @Test
     @DisplayName("should delete BlogPost by deleteBlogPostByTitleAndCreatorEmail()")
     void should_delete_Blogpost_by_deleteBlogPostByTitleAndCreatorEmail() {
-        Mono<Void> requestedBlogPost =
+        Mono<Long> requestedBlogPost =
                 IBlogPostRepository.deleteBlogPostByTitleAndCreatorEmail(
                         "The Weather Girls in New York City",
                         "soul-sisters@gmail.com");
 
         StepVerifier
                 .create(requestedBlogPost)
+                .assertNext(check -> assertThat(check).isEqualTo(1L))
                 .verifyComplete();
     }
 
@@ -107,4 +170,310 @@ class IBlogPostRepositoryTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("should reject a duplicate title and creatorEmail with one round trip by createBlogPost()")
+    void should_reject_duplicate_with_one_round_trip_by_createBlogPost() {
+        Mono<BlogPostResponse> requestedBlogPost =
+                blogPostService.createBlogPost(
+                        new BlogPostRequest(
+                                "The new Queen Lizzo",
+                                "The new Song About Damn Time is out!",
+                                new String[]{"fresh"}),
+                        "lizzo@gmail.com");
+
+        StepVerifier
+                .create(requestedBlogPost)
+                .verifyErrorMessage("BLOG_POST_ALREADY_EXISTS");
+
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should create, read and delete a BlogPost with one round trip each")
+    void should_create_read_and_delete_with_one_round_trip_each() {
+        StepVerifier
+                .create(blogPostService.createBlogPost(
+                        new BlogPostRequest(
+                                "Daft Punk is playing at my house",
+                                "Get the party started with LCD Soundsystem",
+                                new String[]{"funny"}),
+                        "lcd@gmail.com"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+
+        commandCounter.reset();
+        StepVerifier
+                .create(blogPostService.getBlogPostByTitleAndCreatorEmail(
+                        "Daft Punk is playing at my house",
+                        "lcd@gmail.com"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+
+        commandCounter.reset();
+        StepVerifier
+                .create(blogPostService.deleteBlogPostByTitleAndCreatorEmail(
+                        "Daft Punk is playing at my house",
+                        "lcd@gmail.com"))
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should map unmatched reads and deletes to exceptions with one round trip each")
+    void should_map_unmatched_reads_and_deletes_with_one_round_trip_each() {
+        StepVerifier
+                .create(blogPostService.getBlogPostByTitleAndCreatorEmail(
+                        "Nobody wrote this one",
+                        "nobody@gmail.com"))
+                .verifyErrorMessage("BLOG_POST_NOT_FOUND");
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+
+        commandCounter.reset();
+        StepVerifier
+                .create(blogPostService.deleteBlogPostByTitleAndCreatorEmail(
+                        "Nobody wrote this one",
+                        "nobody@gmail.com"))
+                .verifyErrorMessage("BLOG_POST_NOT_FOUND");
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should update only the current version by findAndModifyByTitleAndCreatorEmail()")
+    void should_update_only_current_version_by_findAndModifyByTitleAndCreatorEmail() {
+        BlogPost changes = new BlogPost(
+                null,
+                "The new Queen Lizzo",
+                "About Damn Time is still on repeat!",
+                IDateTimeCreator.createDateTime(),
+                "lizzo@gmail.com",
+                Set.of(Tags.FUNNY));
+
+        StepVerifier
+                .create(IBlogPostRepository.findAndModifyByTitleAndCreatorEmail(
+                        "The new Queen Lizzo",
+                        "lizzo@gmail.com",
+                        0L,
+                        changes))
+                .assertNext(check -> {
+                    assertThat(check.getContent())
+                            .isEqualTo("About Damn Time is still on repeat!");
+                    assertThat(check.getVersion())
+                            .isEqualTo(1L);})
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+
+        // a second editor, who still holds version 0, must not overwrite the change
+        StepVerifier
+                .create(IBlogPostRepository.findAndModifyByTitleAndCreatorEmail(
+                        "The new Queen Lizzo",
+                        "lizzo@gmail.com",
+                        0L,
+                        changes))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should project summaries with a content excerpt by findAllSummaries()")
+    void should_project_summaries_with_excerpt_by_findAllSummaries() {
+        Flux<BlogPostSummary> requestedSummaries =
+                IBlogPostRepository.findAllSummariesByTagMatch(Set.of(Tags.FRESH), TagMatch.EXACT, 11);
+
+        StepVerifier
+                .create(requestedSummaries)
+                .assertNext(check -> {
+                    assertThat(check.getTitle())
+                            .isEqualTo("The new Queen Lizzo");
+                    assertThat(check.getCreatorEmail())
+                            .isEqualTo("lizzo@gmail.com");
+                    assertThat(check.getTags())
+                            .containsExactly(Tags.FRESH);
+                    assertThat(check.getExcerpt())
+                            .isEqualTo("The new Son");})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should leave the content in the database by findAllSummaries()")
+    void should_leave_content_in_database_by_findAllSummaries() {
+        StepVerifier
+                .create(IBlogPostRepository.findAllSummaries(0))
+                .assertNext(check -> assertThat(check.getExcerpt()).isNull())
+                .assertNext(check -> assertThat(check.getExcerpt()).isNull())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should match any of the tags by findAllByTagMatch()")
+    void should_match_any_tag_by_findAllByTagMatch() {
+        StepVerifier
+                .create(IBlogPostRepository.findAllByTagMatch(Set.of(Tags.FUNNY,Tags.SPRING), TagMatch.ANY))
+                .assertNext(check -> assertThat(check.getTitle())
+                        .isEqualTo("The Weather Girls in New York City"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should match all of the tags by findAllByTagMatch()")
+    void should_match_all_tags_by_findAllByTagMatch() {
+        StepVerifier
+                .create(IBlogPostRepository.findAllByTagMatch(Set.of(Tags.FRESH), TagMatch.ALL)
+                        .map(BlogPost::getTitle))
+                .recordWith(ArrayList::new)
+                .expectNextCount(2)
+                .consumeRecordedWith(titles -> assertThat(titles)
+                        .containsExactlyInAnyOrder(
+                                "The Weather Girls in New York City",
+                                "The new Queen Lizzo"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should compute the tagMask of older BlogPosts by backfillTagMasks()")
+    void should_compute_tagMask_of_older_BlogPosts_by_backfillTagMasks() {
+        UUID id = UUID.randomUUID();
+        mongoTemplate
+                .insert(new Document("_id", id)
+                        .append("title", "A BlogPost without tagMask")
+                        .append("content", "Written before the tagMask existed")
+                        .append("creatorEmail", "old-timer@gmail.com")
+                        .append("tags", List.of(Tags.FRESH.name(), Tags.SPRING.name())), "blog_post")
+                .block();
+
+        StepVerifier
+                .create(IBlogPostRepository.backfillTagMasks())
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier
+                .create(mongoTemplate.findById(id, Document.class, "blog_post"))
+                .assertNext(check -> assertThat(check.getInteger("tagMask"))
+                        .isEqualTo(Tags.FRESH.mask() | Tags.SPRING.mask()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should match exactly the tags by findAllByTagMatch()")
+    void should_match_exact_tags_by_findAllByTagMatch() {
+        StepVerifier
+                .create(IBlogPostRepository.findAllByTagMatch(Set.of(Tags.FRESH), TagMatch.EXACT))
+                .assertNext(check -> assertThat(check.getTitle())
+                        .isEqualTo("The new Queen Lizzo"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should find only version and publishedAt by findVersionByTitleAndCreatorEmail()")
+    void should_find_version_by_findVersionByTitleAndCreatorEmail() {
+        StepVerifier
+                .create(IBlogPostRepository.findVersionByTitleAndCreatorEmail(
+                        "The new Queen Lizzo",
+                        "lizzo@gmail.com"))
+                .assertNext(check -> {
+                    assertThat(check.getVersion())
+                            .isEqualTo(0L);
+                    assertThat(check.getPublishedAt())
+                            .isNotNull();})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should change the findCollectionVersion(), when a BlogPost is updated")
+    void should_change_collection_version_when_BlogPost_is_updated() {
+        BlogPostCollectionVersion before = IBlogPostRepository.findCollectionVersion().block();
+
+        IBlogPostRepository.findAndModifyByTitleAndCreatorEmail(
+                        "The new Queen Lizzo",
+                        "lizzo@gmail.com",
+                        0L,
+                        new BlogPost(
+                                null,
+                                "The new Queen Lizzo",
+                                "About Damn Time is still on repeat!",
+                                "2022-06-01 12:00:00",
+                                "lizzo@gmail.com",
+                                Set.of(Tags.FRESH)))
+                .block();
+
+        StepVerifier
+                .create(IBlogPostRepository.findCollectionVersion())
+                .assertNext(check -> {
+                    assertThat(check.getCount())
+                            .isEqualTo(before.getCount());
+                    assertThat(check.getVersions())
+                            .isEqualTo(before.getVersions() + 1);})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should insert all but the duplicate with one round trip by bulkInsert()")
+    void should_insert_all_but_duplicate_with_one_round_trip_by_bulkInsert() {
+        List<BlogPost> blogPosts = List.of(
+                new BlogPost(
+                        UUID.randomUUID(),
+                        "The new Queen Lizzo",
+                        "A second post with the same title",
+                        IDateTimeCreator.createDateTime(),
+                        "lizzo@gmail.com",
+                        Set.of(Tags.FRESH)),
+                new BlogPost(
+                        UUID.randomUUID(),
+                        "Juice is still fresh",
+                        "Another post, which goes through",
+                        IDateTimeCreator.createDateTime(),
+                        "lizzo@gmail.com",
+                        Set.of(Tags.FRESH)));
+
+        StepVerifier
+                .create(IBlogPostRepository.bulkInsert(blogPosts))
+                .assertNext(check -> {
+                    assertThat(check.errors())
+                            .extracting(BulkWriteError::getIndex)
+                            .containsExactly(0);
+                    assertThat(check.errors().get(0).getCode())
+                            .isEqualTo(11000);})
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+
+        StepVerifier
+                .create(IBlogPostRepository.findByTitleAndCreatorEmail("Juice is still fresh","lizzo@gmail.com"))
+                .assertNext(check -> assertThat(check.getVersion())
+                        .isEqualTo(0L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should update only the current versions with one round trip by bulkUpdate()")
+    void should_update_only_current_versions_with_one_round_trip_by_bulkUpdate() {
+        BlogPost changes = new BlogPost(
+                null,
+                "The new Queen Lizzo",
+                "About Damn Time is still on repeat!",
+                IDateTimeCreator.createDateTime(),
+                "lizzo@gmail.com",
+                Set.of(Tags.FUNNY));
+
+        StepVerifier
+                .create(IBlogPostRepository.bulkUpdate("lizzo@gmail.com", List.of(
+                        new BlogPostUpdate("The new Queen Lizzo", 0L, changes),
+                        new BlogPostUpdate("The new Queen Lizzo", 0L, changes))))
+                .assertNext(check -> {
+                    assertThat(check.matchedCount())
+                            .isEqualTo(1);
+                    assertThat(check.errors())
+                            .isEmpty();})
+                .verifyComplete();
+        assertThat(commandCounter.count())
+                .isEqualTo(1);
+    }
+}
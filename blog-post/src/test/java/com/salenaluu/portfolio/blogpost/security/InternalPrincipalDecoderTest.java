@@ -0,0 +1,78 @@
+package com.salenaluu.portfolio.blogpost.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InternalPrincipalDecoderTest {
+
+    String secret = "a-secret-only-gateway-and-services-know";
+    ReactiveJwtDecoder internalPrincipalDecoder = new BlogPostSecurityConfig().internalPrincipalDecoder(secret);
+
+    @Test
+    @DisplayName("should trust the principal signed by the api-gateway and map its groups")
+    void should_accept_principal_signed_by_gateway() {
+        StepVerifier
+                .create(internalPrincipalDecoder.decode(internalPrincipal(secret, "api-gateway"))
+                        .flatMap(new JwtGroupsAuthenticationConverter()::convert))
+                .assertNext(authentication -> {
+                    assertThat(authentication.getName()).isEqualTo("soul-sisters@gmail.com");
+                    assertThat(authentication.getAuthorities())
+                            .extracting(GrantedAuthority::getAuthority)
+                            .contains("portfolio_explorer");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should reject a principal signed with another secret")
+    void should_reject_principal_with_wrong_secret() {
+        StepVerifier
+                .create(internalPrincipalDecoder.decode(internalPrincipal("a-secret-somebody-made-up-by-himself", "api-gateway")))
+                .expectError(JwtException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("should reject a principal, which wasn't issued by the api-gateway")
+    void should_reject_principal_of_other_issuer() {
+        StepVerifier
+                .create(internalPrincipalDecoder.decode(internalPrincipal(secret, "somebody-else")))
+                .expectError(JwtException.class)
+                .verify();
+    }
+
+    private String internalPrincipal(String secret, String issuer) {
+        try {
+            SignedJWT jwt = new SignedJWT(
+                    new JWSHeader(JWSAlgorithm.HS256),
+                    new JWTClaimsSet.Builder()
+                            .issuer(issuer)
+                            .subject("soul-sisters@gmail.com")
+                            .claim("groups", List.of("portfolio_explorer"))
+                            .issueTime(new Date())
+                            .expirationTime(Date.from(Instant.now().plusSeconds(30)))
+                            .build());
+            jwt.sign(new MACSigner(secret.getBytes(StandardCharsets.UTF_8)));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
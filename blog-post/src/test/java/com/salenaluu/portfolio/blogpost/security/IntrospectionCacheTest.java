@@ -0,0 +1,109 @@
+package com.salenaluu.portfolio.blogpost.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.DefaultOAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntrospectionCacheTest {
+
+    IntrospectionCache introspectionCache = new IntrospectionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    AtomicInteger introspections = new AtomicInteger();
+
+    @Test
+    @DisplayName("should introspect a token once, when it's used by concurrent requests")
+    void should_coalesce_concurrent_introspections() {
+        Mono<OAuth2AuthenticatedPrincipal> slowIntrospection = Mono
+                .fromCallable(() -> principalExpiringAt(Instant.now().plusSeconds(300)))
+                .delayElement(Duration.ofMillis(100));
+
+        StepVerifier
+                .create(Flux.range(0, 20)
+                        .flatMap(request -> introspectionCache.get("token", () -> {
+                            introspections.incrementAndGet();
+                            return slowIntrospection;
+                        })))
+                .expectNextCount(20)
+                .verifyComplete();
+
+        assertThat(introspections).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should remember an inactive token")
+    void should_cache_inactive_token() {
+        for (int i = 0; i < 3; i++) {
+            StepVerifier
+                    .create(introspectionCache.get("revoked", () -> {
+                        introspections.incrementAndGet();
+                        return Mono.error(new BadOpaqueTokenException("Provided token isn't active"));
+                    }))
+                    .expectError(BadOpaqueTokenException.class)
+                    .verify();
+        }
+
+        assertThat(introspections).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should not remember a failed introspection")
+    void should_not_cache_failed_introspection() {
+        for (int i = 0; i < 3; i++) {
+            StepVerifier
+                    .create(introspectionCache.get("token", () -> {
+                        introspections.incrementAndGet();
+                        return Mono.error(new IllegalStateException("introspection endpoint unreachable"));
+                    }))
+                    .expectError(IllegalStateException.class)
+                    .verify();
+        }
+
+        assertThat(introspections).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("should not cache a token beyond its exp")
+    void should_not_cache_beyond_exp() {
+        Instant expiresAt = Instant.now().plusMillis(200);
+        for (int i = 0; i < 2; i++) {
+            StepVerifier
+                    .create(introspectionCache.get("token", () -> {
+                        introspections.incrementAndGet();
+                        return Mono.just(principalExpiringAt(expiresAt));
+                    }))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+        assertThat(introspections).hasValue(1);
+
+        StepVerifier
+                .create(Mono.delay(Duration.ofMillis(300))
+                        .then(introspectionCache.get("token", () -> {
+                            introspections.incrementAndGet();
+                            return Mono.just(principalExpiringAt(Instant.now().plusSeconds(300)));
+                        })))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(introspections).hasValue(2);
+    }
+
+    private OAuth2AuthenticatedPrincipal principalExpiringAt(Instant expiresAt) {
+        return new DefaultOAuth2AuthenticatedPrincipal(
+                Map.of(OAuth2TokenIntrospectionClaimNames.EXP, expiresAt, "sub", "soul-sisters@gmail.com"),
+                List.of(new SimpleGrantedAuthority("portfolio_explorer")));
+    }
+}
@@ -0,0 +1,161 @@
+package com.salenaluu.portfolio.blogpost.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwkSetCacheTest {
+
+    RSAKey oldKey = generateKey("old");
+    RSAKey newKey = generateKey("new");
+
+    // Our stub JWK Set endpoint of the identity provider
+    AtomicReference<JWKSet> publishedKeys = new AtomicReference<>(new JWKSet(oldKey.toPublicJWK()));
+    AtomicInteger fetches = new AtomicInteger();
+    volatile boolean identityProviderDown;
+    WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                fetches.incrementAndGet();
+                if (identityProviderDown){
+                    return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+                }
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(publishedKeys.get().toString())
+                        .build());
+            })
+            .build();
+
+    NimbusReactiveJwtDecoder jwtDecoder = jwtDecoder(Duration.ofMinutes(1));
+
+    @Test
+    @DisplayName("should verify a token locally and map its groups to authorities")
+    void should_verify_token_and_map_groups() {
+        StepVerifier
+                .create(jwtDecoder.decode(signedToken(oldKey))
+                        .flatMap(new JwtGroupsAuthenticationConverter()::convert))
+                .assertNext(authentication -> {
+                    assertThat(authentication).isInstanceOf(BearerTokenAuthentication.class);
+                    assertThat(authentication.getAuthorities())
+                            .extracting(GrantedAuthority::getAuthority)
+                            .containsExactlyInAnyOrder("SCOPE_openid", "portfolio_explorer");
+                })
+                .verifyComplete();
+
+        // the keys are cached now
+        StepVerifier.create(jwtDecoder.decode(signedToken(oldKey)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should fetch the keys again, when a token is signed with an unknown kid")
+    void should_refresh_on_unknown_kid() {
+        NimbusReactiveJwtDecoder jwtDecoder = jwtDecoder(Duration.ZERO);
+        StepVerifier.create(jwtDecoder.decode(signedToken(oldKey)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // the identity provider rotates its keys
+        publishedKeys.set(new JWKSet(List.of(oldKey.toPublicJWK(), newKey.toPublicJWK())));
+
+        StepVerifier.create(jwtDecoder.decode(signedToken(oldKey)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(fetches).hasValue(1);
+        StepVerifier.create(jwtDecoder.decode(signedToken(newKey)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("should reject made up kids without asking the identity provider each time")
+    void should_throttle_refresh_on_unknown_kid() {
+        RSAKey unknownKey = generateKey("unknown");
+        StepVerifier.create(jwtDecoder.decode(signedToken(oldKey)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(jwtDecoder.decode(signedToken(unknownKey)))
+                    .expectError(JwtException.class)
+                    .verify();
+        }
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should not ask an identity provider, which is down, for every token with an unknown kid")
+    void should_throttle_refresh_while_identity_provider_is_down() {
+        identityProviderDown = true;
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(jwtDecoder.decode(signedToken(newKey)))
+                    .expectError(JwtException.class)
+                    .verify();
+        }
+        assertThat(fetches).hasValue(1);
+    }
+
+    private NimbusReactiveJwtDecoder jwtDecoder(Duration minimumRefreshInterval) {
+        JwkSetCache jwkSetCache = new JwkSetCache(
+                webClient, "https://idp.example.com/keys", Duration.ofMinutes(5), minimumRefreshInterval);
+        return NimbusReactiveJwtDecoder.withJwkSource(jwkSetCache::keysFor).build();
+    }
+
+    private String signedToken(RSAKey key) {
+        try {
+            SignedJWT jwt = new SignedJWT(
+                    new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                    new JWTClaimsSet.Builder()
+                            .subject("soul-sisters@gmail.com")
+                            .claim("scope", "openid")
+                            .claim("groups", List.of("portfolio_explorer"))
+                            .issueTime(new Date())
+                            .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                            .build());
+            jwt.sign(new RSASSASigner(key));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RSAKey generateKey(String keyId) {
+        try {
+            return new RSAKeyGenerator(2048).keyID(keyId).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.salenaluu.portfolio.blogpost.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.salenaluu.portfolio.blogpost.cache.BlogPostCache;
+import com.salenaluu.portfolio.blogpost.cache.EncodedResponseCache;
 import com.salenaluu.portfolio.blogpost.model.BlogPost;
+import com.salenaluu.portfolio.blogpost.model.BlogPostSummary;
+import com.salenaluu.portfolio.blogpost.model.BlogPostVersion;
+import com.salenaluu.portfolio.blogpost.repository.BulkWriteOutcome;
 import com.salenaluu.portfolio.blogpost.repository.IBlogPostRepository;
 import com.salenaluu.portfolio.blogpost.utils.BlogPostSetupTest;
+import com.salenaluu.portfolio.blogpost.utils.enums.BulkItemStatus;
 import com.salenaluu.portfolio.blogpost.utils.enums.Tags;
 import com.salenaluu.portfolio.blogpost.utils.interfaces.IDateTimeCreator;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostPage;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequest;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostRequestUpdate;
 import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BlogPostSummaryResponse;
+import com.salenaluu.portfolio.blogpost.utils.mapper.BulkItemResult;
+import com.salenaluu.portfolio.blogpost.utils.pagination.ContinuationToken;
+import org.bson.BsonDocument;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -17,12 +30,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.ActiveProfiles;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -37,9 +53,17 @@ class BlogPostServiceImplTest {
     @InjectMocks
     BlogPostServiceImpl blogPostService;
 
+    @Spy
+    BlogPostCache blogPostCache = new BlogPostCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    EncodedResponseCache encodedResponseCache = new EncodedResponseCache(true, Duration.ofMinutes(1), objectMapper);
+
     @Spy
     BlogPostSetupTest blogPostSetupTest;
 
+    static ObjectMapper objectMapper = new ObjectMapper();
+
     String email = "test@example.com";
 
     // <editor-fold defaultstate="collapsed" desc="BlogPosts">
@@ -60,7 +84,8 @@ class BlogPostServiceImplTest {
             "This is the way",
             "A special sentence with force in it.",
             "salenaluu@gmail.com",
-            new String[]{});
+            new String[]{},
+            0L);
     // </editor-fold>
 
     @BeforeEach
@@ -78,9 +103,7 @@ class BlogPostServiceImplTest {
     @Test
     @DisplayName("should createBlockPost()")
     void should_createBlockPost() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(false));
-        given(blogPostRepository.save(any()))
+        given(blogPostRepository.insert(any(BlogPost.class)))
                 .willReturn(Mono.just(blogPost));
 
         Mono<BlogPostResponse> requestedBlogPost =
@@ -99,8 +122,8 @@ class BlogPostServiceImplTest {
     @Test
     @DisplayName("should throw exception if BlogPost already exists by createBlockPost()")
     void should_throw_exception_if_BlogPost_already_exists_by_createBlockPost() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(true));
+        given(blogPostRepository.insert(any(BlogPost.class)))
+                .willReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
 
         Mono<BlogPostResponse> requestedBlogPost = blogPostService.createBlogPost(blogPostRequest, blogPost.getCreatorEmail());
 
@@ -109,31 +132,10 @@ class BlogPostServiceImplTest {
                 .verifyErrorMessage("BLOG_POST_ALREADY_EXISTS");
     }
 
-    @Test
-    @DisplayName("should throw exception if RequestedModel is empty by createBlogPost()")
-    void should_throw_exception_if_RequestedModel_is_empty_by_createBlogPost() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.empty());
-
-        BlogPostRequest emptyBlogPostRequest = new BlogPostRequest(
-                "",
-                "",
-                new String[]{});
-
-        Mono<BlogPostResponse> requestedBlockPost =
-                blogPostService.createBlogPost(emptyBlogPostRequest,blogPost.getCreatorEmail());
-
-        StepVerifier
-                .create(requestedBlockPost)
-                .verifyErrorMessage("REQUEST_NOT_EXCEPTED");
-    }
-
     @Test
     @DisplayName("should throw exception if RequestedModel is not excepted by createBlogPost()")
     void should_throw_exception_if_RequestedModel_is_not_excepted_by_createBlogPost() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(false));
-        given(blogPostRepository.save(any()))
+        given(blogPostRepository.insert(any(BlogPost.class)))
                 .willReturn(Mono.empty());
 
         Mono<BlogPostResponse> requestedBlogPost =
@@ -147,8 +149,6 @@ class BlogPostServiceImplTest {
     @Test
     @DisplayName("should retrieve BlogPost by getBlogPostByTitleAndCreatorEmail()")
     void should_retrieve_BlogPost_by_getBlogPostByTitleAndCreatorEmail() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(true));
         given(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
                 .willReturn(Mono.just(blogPost));
 
@@ -167,11 +167,24 @@ class BlogPostServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("should serve a repeated read from the cache by getBlogPostByTitleAndCreatorEmail()")
+    void should_serve_repeated_read_from_cache_by_getBlogPostByTitleAndCreatorEmail() {
+        given(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
+                .willReturn(Mono.just(blogPost));
+
+        blogPostService.getBlogPostByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail()).block();
+        blogPostService.getBlogPostByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail()).block();
+
+        verify(blogPostRepository,times(1))
+                .findByTitleAndCreatorEmail(anyString(),anyString());
+    }
+
     @Test
     @DisplayName("should throw exception if BlogPost wasn't found by getBlogPostByTitleAndCreatorEmail()")
     void should_throw_exception_if_BlogPost_was_not_found_by_getBlogPostByTitleAndCreatorEmail() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(false));
+        given(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
+                .willReturn(Mono.empty());
 
         Mono<BlogPostResponse> requestedBlogPost =
                 blogPostService.getBlogPostByTitleAndCreatorEmail(
@@ -212,6 +225,238 @@ class BlogPostServiceImplTest {
                 .verifyErrorMessage("NO_CONTENT_IN_DB");
     }
 
+    @Test
+    @DisplayName("should getAllBlogPostSummaries()")
+    void should_getAllBlogPostSummaries() {
+        BlogPostSummary blogPostSummary = new BlogPostSummary();
+        blogPostSummary.setTitle("This is the way");
+        blogPostSummary.setCreatorEmail("salenaluu@gmail.com");
+        blogPostSummary.setTags(Set.of(Tags.FUNNY));
+        blogPostSummary.setExcerpt("A special");
+        given(blogPostRepository.findAllSummaries(9))
+                .willReturn(Flux.just(blogPostSummary));
+
+        Flux<BlogPostSummaryResponse> allSummaries = blogPostService.getAllBlogPostSummaries(9);
+
+        StepVerifier
+                .create(allSummaries)
+                .assertNext(check -> {
+                    assertThat(check.title())
+                            .isEqualTo("This is the way");
+                    assertThat(check.tags())
+                            .containsExactly("FUNNY");
+                    assertThat(check.excerpt())
+                            .isEqualTo("A special");})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should throw exception if the excerpt length is invalid by getAllBlogPostSummaries()")
+    void should_throw_exception_if_excerpt_length_is_invalid_by_getAllBlogPostSummaries() {
+        StepVerifier
+                .create(blogPostService.getAllBlogPostSummaries(-1))
+                .verifyErrorMessage("EXCERPT_LENGTH_INVALID");
+    }
+
+    @Test
+    @DisplayName("should throw exception if tags not match any BlogPost by getAllBlogPostSummariesWithTags()")
+    void should_throw_exception_if_tags_not_match_any_BlogPost_by_getAllBlogPostSummariesWithTags() {
+        given(blogPostRepository.findAllSummariesByTagMatch(any(),any(),anyInt()))
+                .willReturn(Flux.empty());
+
+        StepVerifier
+                .create(blogPostService.getAllBlogPostSummariesWithTags(new String[]{"FRESH"},"any",0))
+                .verifyErrorMessage("BLOG_POST_WITH_THESE_TAGS_NOT_FOUND");
+    }
+
+    @Test
+    @DisplayName("should getBlogPostPage() with a continuationToken for the next page")
+    void should_getBlogPostPage_with_continuationToken_for_next_page() {
+        BlogPost olderBlogPost = new BlogPost(
+                UUID.randomUUID(),
+                "This was the way",
+                "An older sentence with force in it.",
+                "2022-01-01 10:00:00",
+                "salenaluu@gmail.com",
+                new HashSet<>());
+        given(blogPostRepository.findPageAfter(isNull(),isNull(),eq(2)))
+                .willReturn(Flux.just(blogPost,olderBlogPost));
+
+        Mono<BlogPostPage> requestedPage = blogPostService.getBlogPostPage(1,null);
+
+        StepVerifier
+                .create(requestedPage)
+                .assertNext(check -> {
+                    assertThat(check.blogPosts())
+                            .extracting(BlogPostResponse::title)
+                            .containsExactly("This is the way");
+                    assertThat(ContinuationToken.decode(check.continuationToken()))
+                            .isEqualTo(ContinuationToken.of(blogPost));})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should getEncodedBlogPostByTitleAndCreatorEmail() and encode the BlogPost only once")
+    void should_getEncodedBlogPostByTitleAndCreatorEmail_and_encode_only_once() throws Exception {
+        given(blogPostRepository.findByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail()))
+                .willReturn(Mono.just(blogPost));
+
+        byte[] first = blogPostService
+                .getEncodedBlogPostByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail())
+                .block();
+        byte[] second = blogPostService
+                .getEncodedBlogPostByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail())
+                .block();
+
+        assertThat(objectMapper.readValue(first, BlogPostResponse.class).title())
+                .isEqualTo("This is the way");
+        assertThat(second)
+                .isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("should getEncodedFirstBlogPostPage() from the cache, until a BlogPost is created")
+    void should_getEncodedFirstBlogPostPage_from_cache_until_BlogPost_is_created() {
+        given(blogPostRepository.findPageAfter(isNull(),isNull(),eq(21)))
+                .willReturn(Flux.just(blogPost));
+        given(blogPostRepository.insert(any(BlogPost.class)))
+                .willReturn(Mono.just(blogPost));
+
+        byte[] first = blogPostService.getEncodedFirstBlogPostPage(20).block();
+        byte[] cached = blogPostService.getEncodedFirstBlogPostPage(20).block();
+        blogPostService.createBlogPost(blogPostRequest,blogPost.getCreatorEmail()).block();
+        byte[] reloaded = blogPostService.getEncodedFirstBlogPostPage(20).block();
+
+        assertThat(cached)
+                .isSameAs(first);
+        assertThat(reloaded)
+                .isNotSameAs(first)
+                .isEqualTo(first);
+        verify(blogPostRepository, times(2)).findPageAfter(isNull(),isNull(),eq(21));
+    }
+
+    @Test
+    @DisplayName("should getBlogPostValidator() from the version index, without loading the BlogPost")
+    void should_getBlogPostValidator_from_version_index_without_loading_BlogPost() {
+        BlogPostVersion blogPostVersion = new BlogPostVersion();
+        blogPostVersion.setVersion(3L);
+        blogPostVersion.setPublishedAt("2022-06-01 12:00:00");
+        given(blogPostRepository.findVersionByTitleAndCreatorEmail(blogPost.getTitle(),blogPost.getCreatorEmail()))
+                .willReturn(Mono.just(blogPostVersion));
+
+        StepVerifier
+                .create(blogPostService.getBlogPostValidator(blogPost.getTitle(),blogPost.getCreatorEmail(),true))
+                .assertNext(check -> assertThat(check.eTag())
+                        .isEqualTo("3-20220601120000"))
+                .verifyComplete();
+
+        verify(blogPostRepository,never())
+                .findByTitleAndCreatorEmail(anyString(),anyString());
+    }
+
+    @Test
+    @DisplayName("should throw exception if BlogPost not found by getBlogPostValidator()")
+    void should_throw_exception_if_BlogPost_not_found_by_getBlogPostValidator() {
+        given(blogPostRepository.findVersionByTitleAndCreatorEmail(anyString(),anyString()))
+                .willReturn(Mono.empty());
+
+        StepVerifier
+                .create(blogPostService.getBlogPostValidator(blogPost.getTitle(),blogPost.getCreatorEmail(),true))
+                .verifyErrorMessage("BLOG_POST_NOT_FOUND");
+    }
+
+    @Test
+    @DisplayName("should createBlogPosts() and stream a result per BlogPost")
+    void should_createBlogPosts_and_stream_result_per_BlogPost() {
+        given(blogPostRepository.bulkInsert(anyList()))
+                .willReturn(Mono.just(new BulkWriteOutcome(0, List.of(
+                        new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1)))));
+
+        Flux<BulkItemResult> results = blogPostService.createBlogPosts(Flux.just(
+                        new BlogPostRequest("First of the batch", "A special sentence with force in it.", new String[]{"funny"}),
+                        new BlogPostRequest("", "A post without a title", new String[]{}),
+                        new BlogPostRequest("This is the way", "A special sentence with force in it.", new String[]{}),
+                        new BlogPostRequest("Unknown tag", "A special sentence with force in it.", new String[]{"boring"})),
+                email);
+
+        StepVerifier
+                .create(results.map(BulkItemResult::status))
+                .expectNext(BulkItemStatus.CREATED,
+                        BulkItemStatus.INVALID,
+                        BulkItemStatus.DUPLICATE,
+                        BulkItemStatus.INVALID)
+                .verifyComplete();
+
+        // only the valid BlogPosts go into the bulkWrite
+        verify(blogPostRepository,times(1))
+                .bulkInsert(argThat(blogPosts -> blogPosts.size() == 2));
+    }
+
+    @Test
+    @DisplayName("should updateBlogPosts() and tell outdated from missing BlogPosts")
+    void should_updateBlogPosts_and_tell_outdated_from_missing_BlogPosts() {
+        BlogPostVersion outdated = new BlogPostVersion();
+        outdated.setTitle("This is the way");
+        outdated.setVersion(5L);
+        outdated.setPublishedAt("2022-01-01 10:00:00");
+        given(blogPostRepository.bulkUpdate(eq(email),anyList()))
+                .willReturn(Mono.just(new BulkWriteOutcome(0, List.of())));
+        given(blogPostRepository.findVersionsByCreatorEmailAndTitleIn(eq(email),anyCollection()))
+                .willReturn(Flux.just(outdated));
+
+        Flux<BulkItemResult> results = blogPostService.updateBlogPosts(Flux.just(
+                        new BlogPostRequestUpdate("This is the way", "This is the way", "New content with force", new String[]{}, 4L),
+                        new BlogPostRequestUpdate("This was never the way", "Still not the way", "New content with force", new String[]{}, 0L)),
+                email);
+
+        StepVerifier
+                .create(results.map(BulkItemResult::status))
+                .expectNext(BulkItemStatus.CONFLICT,
+                        BulkItemStatus.NOT_FOUND)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should getBlogPostPage() without a continuationToken on the last page")
+    void should_getBlogPostPage_without_continuationToken_on_last_page() {
+        given(blogPostRepository.findPageAfter(eq(blogPost.getPublishedAt()),eq(blogPost.getId()),eq(21)))
+                .willReturn(Flux.empty());
+
+        Mono<BlogPostPage> requestedPage = blogPostService.getBlogPostPage(
+                20,
+                ContinuationToken.of(blogPost).encode());
+
+        StepVerifier
+                .create(requestedPage)
+                .assertNext(check -> {
+                    assertThat(check.blogPosts())
+                            .isEmpty();
+                    assertThat(check.continuationToken())
+                            .isNull();})
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should throw exception if the continuationToken is invalid by getBlogPostPage()")
+    void should_throw_exception_if_continuationToken_is_invalid_by_getBlogPostPage() {
+        Mono<BlogPostPage> requestedPage = blogPostService.getBlogPostPage(20,"not-a-token");
+
+        StepVerifier
+                .create(requestedPage)
+                .verifyErrorMessage("CONTINUATION_TOKEN_INVALID");
+    }
+
+    @Test
+    @DisplayName("should throw exception if the limit is out of range by getBlogPostPage()")
+    void should_throw_exception_if_limit_is_out_of_range_by_getBlogPostPage() {
+        StepVerifier
+                .create(blogPostService.getBlogPostPage(0,null))
+                .verifyErrorMessage("PAGE_LIMIT_INVALID");
+        StepVerifier
+                .create(blogPostService.getBlogPostPage(101,null))
+                .verifyErrorMessage("PAGE_LIMIT_INVALID");
+    }
+
     @Test
     @DisplayName("should getAllBlogPostsWithTag")
     void should_getAllBlogPostsWithTags() {
@@ -224,11 +469,11 @@ class BlogPostServiceImplTest {
                 "blacklabel-metal@gmail.com",
                 Set.of(Tags.FRESH));
         // </editor-fold>
-        given(blogPostRepository.findAllByTags(any()))
+        given(blogPostRepository.findAllByTagMatch(any(),any()))
                 .willReturn(Flux.just(systemOfADown));
 
         Flux<BlogPostResponse> allBlogPostsWithTags =
-                blogPostService.getAllBlogPostsWithTags(new String[]{"FRESH"});
+                blogPostService.getAllBlogPostsWithTags(new String[]{"FRESH"},"any");
 
         StepVerifier
                 .create(allBlogPostsWithTags)
@@ -240,14 +485,25 @@ class BlogPostServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("should throw exception if a tag or the match doesn't exist by getAllBlogPostsWithTags()")
+    void should_throw_exception_if_tag_or_match_does_not_exist_by_getAllBlogPostsWithTags() {
+        StepVerifier
+                .create(blogPostService.getAllBlogPostsWithTags(new String[]{"BORING"},"any"))
+                .verifyErrorMessage("BLOG_POST_TAG_DOES_NOT_EXISTS");
+        StepVerifier
+                .create(blogPostService.getAllBlogPostsWithTags(new String[]{"FRESH"},"most"))
+                .verifyErrorMessage("TAG_MATCH_INVALID");
+    }
+
     @Test
     @DisplayName("should throw exception if tags not match any BlogPost by getAllBlogPostsWithTags")
     void should_throw_exception_if_tags_not_match_any_Blogpost_by_getAllBlogPostsWithTags() {
-        given(blogPostRepository.findAllByTags(any()))
+        given(blogPostRepository.findAllByTagMatch(any(),any()))
                 .willReturn(Flux.empty());
 
         Flux<BlogPostResponse> allBlogPostsWithTags =
-                blogPostService.getAllBlogPostsWithTags(new String[]{"FRESH"});
+                blogPostService.getAllBlogPostsWithTags(new String[]{"FRESH"},"any");
 
         StepVerifier
                 .create(allBlogPostsWithTags)
@@ -257,19 +513,25 @@ class BlogPostServiceImplTest {
     @Test
     @DisplayName("should updateBlogPost()")
     void should_updateBlogPost() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(true));
-        given(blogPostRepository.findByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(blogPost));
-        given(blogPostRepository.save(any()))
-                .willReturn(Mono.just(blogPost));
+        BlogPost updatedBlogPost = new BlogPost(
+                blogPost.getId(),
+                "This is a joke",
+                "Can you feel it?",
+                IDateTimeCreator.createDateTime(),
+                email,
+                Set.of(Tags.FRESH,Tags.FUNNY));
+        updatedBlogPost.setVersion(1L);
+
+        given(blogPostRepository.findAndModifyByTitleAndCreatorEmail(anyString(),anyString(),any(),any()))
+                .willReturn(Mono.just(updatedBlogPost));
 
         BlogPostRequestUpdate blogPostRequestUpdate =
                 new BlogPostRequestUpdate(
                         "This is the way",
                         "This is a joke",
                         "Can you feel it?",
-                        new String[]{"fresh","funny"});
+                        new String[]{"fresh","funny"},
+                        0L);
 
         Mono<BlogPostResponse> requestedBlogPostUpdate =
                 blogPostService.updateBlogPost(blogPostRequestUpdate,email);
@@ -280,13 +542,17 @@ class BlogPostServiceImplTest {
                     assertThat(check.title())
                             .isEqualTo("This is a joke");
                     assertThat(check.tags().length)
-                            .isEqualTo(2);})
+                            .isEqualTo(2);
+                    assertThat(check.version())
+                            .isEqualTo(1L);})
                 .verifyComplete();
     }
 
     @Test
     @DisplayName("should throw exception if BlogPost wasn't found by updateBlogPost()")
     void should_throw_Exception_if_BlogPost_was_not_found_by_updateBlogPost() {
+        given(blogPostRepository.findAndModifyByTitleAndCreatorEmail(anyString(),anyString(),any(),any()))
+                .willReturn(Mono.empty());
         given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
                 .willReturn(Mono.just(false));
 
@@ -295,7 +561,8 @@ class BlogPostServiceImplTest {
                         "",
                         "This is a joke",
                         "Can you feel it?",
-                        new String[]{"fresh","funny"});
+                        new String[]{"fresh","funny"},
+                        null);
 
         Mono<BlogPostResponse> requestedBlogPostUpdate =
                 blogPostService.updateBlogPost(blogPostRequestUpdate,email);
@@ -306,12 +573,56 @@ class BlogPostServiceImplTest {
     }
 
     @Test
-    @DisplayName("should deleteBlogPostByTitleAndCreatorEmail()")
-    void should_deleteBlogPostByTitleAndCreatorEmail() {
+    @DisplayName("should throw exception if the version is outdated by updateBlogPost()")
+    void should_throw_exception_if_version_is_outdated_by_updateBlogPost() {
+        given(blogPostRepository.findAndModifyByTitleAndCreatorEmail(anyString(),anyString(),any(),any()))
+                .willReturn(Mono.empty());
         given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
                 .willReturn(Mono.just(true));
+
+        BlogPostRequestUpdate blogPostRequestUpdate =
+                new BlogPostRequestUpdate(
+                        "This is the way",
+                        "This is a joke",
+                        "Can you feel it?",
+                        new String[]{"fresh","funny"},
+                        3L);
+
+        Mono<BlogPostResponse> requestedBlogPostUpdate =
+                blogPostService.updateBlogPost(blogPostRequestUpdate,email);
+
+        StepVerifier
+                .create(requestedBlogPostUpdate)
+                .verifyErrorMessage("BLOG_POST_VERSION_CONFLICT");
+    }
+
+    @Test
+    @DisplayName("should throw exception if the new title already exists by updateBlogPost()")
+    void should_throw_exception_if_new_title_already_exists_by_updateBlogPost() {
+        given(blogPostRepository.findAndModifyByTitleAndCreatorEmail(anyString(),anyString(),any(),any()))
+                .willReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        BlogPostRequestUpdate blogPostRequestUpdate =
+                new BlogPostRequestUpdate(
+                        "This is the way",
+                        "This is a joke",
+                        "Can you feel it?",
+                        new String[]{"fresh","funny"},
+                        0L);
+
+        Mono<BlogPostResponse> requestedBlogPostUpdate =
+                blogPostService.updateBlogPost(blogPostRequestUpdate,email);
+
+        StepVerifier
+                .create(requestedBlogPostUpdate)
+                .verifyErrorMessage("BLOG_POST_ALREADY_EXISTS");
+    }
+
+    @Test
+    @DisplayName("should deleteBlogPostByTitleAndCreatorEmail()")
+    void should_deleteBlogPostByTitleAndCreatorEmail() {
         given(blogPostRepository.deleteBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.empty());
+                .willReturn(Mono.just(1L));
 
         Mono<Void> requestedBlogPost =
                 blogPostService.deleteBlogPostByTitleAndCreatorEmail(
@@ -326,8 +637,8 @@ class BlogPostServiceImplTest {
     @Test
     @DisplayName("should exception when BlogPost wasn't found by deleteBlogPostByTitleAndCreatorEmail()")
     void should_throw_exception_when_BlogPost_was_not_found_by_deleteBlogPostByTitleAndCreatorEmail() {
-        given(blogPostRepository.existsBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
-                .willReturn(Mono.just(false));
+        given(blogPostRepository.deleteBlogPostByTitleAndCreatorEmail(anyString(),anyString()))
+                .willReturn(Mono.just(0L));
 
         Mono<Void> requestedBlogPost =
                 blogPostService.deleteBlogPostByTitleAndCreatorEmail(
@@ -0,0 +1,117 @@
+package com.salenaluu.portfolio.notification.config;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// The signing keys of the identity provider, fetched from its JWK Set endpoint.
+// Refreshed on a schedule and whenever a token is signed with a key (kid) we don't know yet,
+// so a key rotation doesn't need a restart. Concurrent refreshes share one fetch.
+@Slf4j
+class JwkSetCache {
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration minimumRefreshInterval;
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<CompletableFuture<JWKSet>> refreshing = new AtomicReference<>();
+    // stamped, when a fetch starts: an endpoint, which is down, isn't asked more often than one, which answers
+    private volatile long lastRefreshAttempt;
+    private Disposable scheduledRefresh;
+
+    JwkSetCache(WebClient webClient, String jwkSetUri, Duration refreshInterval, Duration minimumRefreshInterval) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.minimumRefreshInterval = minimumRefreshInterval;
+        this.lastRefreshAttempt = System.nanoTime() - minimumRefreshInterval.toNanos();
+    }
+
+    @PostConstruct
+    void start() {
+        scheduledRefresh = Flux.interval(Duration.ZERO, refreshInterval)
+                .concatMap(tick -> refresh()
+                        .onErrorResume(e -> {
+                            log.warn("Couldn't refresh the JWK Set from {}", jwkSetUri, e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduledRefresh != null){
+            scheduledRefresh.dispose();
+        }
+    }
+
+    // The JWK source of the NimbusReactiveJwtDecoder
+    Flux<JWK> keysFor(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null){
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+        List<JWK> keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()){
+            return Flux.fromIterable(keys);
+        }
+        // Unknown kid, the identity provider might have rotated its keys.
+        // Refreshed at most once per minimumRefreshInterval, made up kids can't hammer the endpoint.
+        if (System.nanoTime() - lastRefreshAttempt < minimumRefreshInterval.toNanos()){
+            return Flux.empty();
+        }
+        return refresh()
+                .onErrorResume(e -> {
+                    log.warn("Couldn't refresh the JWK Set from {}", jwkSetUri, e);
+                    return Mono.just(jwkSet.get());
+                })
+                .flatMapIterable(selector::select);
+    }
+
+    private Mono<JWKSet> refresh() {
+        // thenApply() gives every caller its own future, a cancelled request can't cancel the shared fetch
+        return Mono.fromFuture(() -> {
+            CompletableFuture<JWKSet> fetch = new CompletableFuture<>();
+            CompletableFuture<JWKSet> inFlight = refreshing.compareAndExchange(null, fetch);
+            if (inFlight != null){
+                return inFlight.thenApply(Function.identity());
+            }
+            lastRefreshAttempt = System.nanoTime();
+            fetch.whenComplete((keys, error) -> refreshing.set(null));
+            webClient.get()
+                    .uri(jwkSetUri)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .map(JwkSetCache::parse)
+                    .doOnNext(jwkSet::set)
+                    .subscribe(fetch::complete, fetch::completeExceptionally, () -> fetch.complete(jwkSet.get()));
+            return fetch.thenApply(Function.identity());
+        });
+    }
+
+    private static JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JWK Set", e);
+        }
+    }
+}
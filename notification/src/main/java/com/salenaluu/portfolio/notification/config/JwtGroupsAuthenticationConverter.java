@@ -0,0 +1,35 @@
+package com.salenaluu.portfolio.notification.config;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.DefaultOAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+// Turns a locally validated JWT into the same Authentication as the introspection does:
+// a BearerTokenAuthentication with the SCOPE_ authorities and the "groups" of the token.
+class JwtGroupsAuthenticationConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> {
+
+    private final JwtGrantedAuthoritiesConverter scopes = new JwtGrantedAuthoritiesConverter();
+
+    @Override
+    public Mono<AbstractAuthenticationToken> convert(Jwt jwt) {
+        Collection<GrantedAuthority> authorities = JwtOpaqueTokenIntrospector.extractAuthorities(
+                new DefaultOAuth2AuthenticatedPrincipal(jwt.getClaims(), scopes.convert(jwt)));
+
+        OAuth2AuthenticatedPrincipal principal =
+                new DefaultOAuth2AuthenticatedPrincipal(
+                        jwt.getClaims(), authorities);
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER, jwt.getTokenValue(), jwt.getIssuedAt(), jwt.getExpiresAt());
+
+        return Mono.just(new BearerTokenAuthentication(principal, accessToken, authorities));
+    }
+}
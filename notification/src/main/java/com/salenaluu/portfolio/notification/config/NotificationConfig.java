@@ -1,13 +1,26 @@
 package com.salenaluu.portfolio.notification.config;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.AmazonSNSAsyncClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQSAsync;
 import com.amazonaws.services.sqs.AmazonSQSAsyncClientBuilder;
+import com.salenaluu.portfolio.notification.receiver.SqsConsumer;
+import com.salenaluu.portfolio.notification.service.NotificationServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.aws.messaging.core.QueueMessagingTemplate;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class NotificationConfig {
@@ -17,20 +30,76 @@ public class NotificationConfig {
     private String secretKey;
     @Value("${cloud.aws.region.static}")
     private String region;
+    // e.g. local stand-ins of SNS and SQS, otherwise the endpoints of the region
+    @Value("${cloud.aws.sns.endpoint:}")
+    private String snsEndpoint;
+    @Value("${cloud.aws.sqs.endpoint:}")
+    private String sqsEndpoint;
 
-
-    public AmazonSQSAsync amazonSQSAsync() {
+    // The pollers of the receiver block in their long polls, each of them needs its own connection
+    @Bean
+    public AmazonSQSAsync amazonSQSAsync(@Value("${notification.receiver.pollers:4}") int pollers) {
         BasicAWSCredentials credentials = new BasicAWSCredentials(accessKey,secretKey);
 
-        return AmazonSQSAsyncClientBuilder
+        AmazonSQSAsyncClientBuilder builder = AmazonSQSAsyncClientBuilder
                 .standard()
-                .withRegion(region)
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
-                .build();
+                .withClientConfiguration(new ClientConfiguration()
+                        .withMaxConnections(pollers + ClientConfiguration.DEFAULT_MAX_CONNECTIONS));
+        if (sqsEndpoint.isBlank()){
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(sqsEndpoint, region));
+        }
+        return builder.build();
+    }
+
+    // Replaces the @SqsListener, which received one message at a time
+    @Bean
+    public SqsConsumer receiver(AmazonSQSAsync amazonSQSAsync,
+                                NotificationServiceImpl notificationServiceImpl,
+                                MeterRegistry registry,
+                                @Value("${notification.receiver.queue:Receiver}") String queue,
+                                @Value("${notification.receiver.pollers:4}") int pollers,
+                                @Value("${notification.receiver.max-messages:10}") int maxMessages,
+                                @Value("${notification.receiver.wait-time:20s}") Duration waitTime,
+                                @Value("${notification.receiver.visibility-timeout:30s}") Duration visibilityTimeout,
+                                @Value("${notification.receiver.max-in-flight:100}") int maxInFlight,
+                                @Value("${notification.receiver.delete-window:100ms}") Duration deleteWindow) {
+        SqsConsumer.Config config = new SqsConsumer.Config();
+        config.setQueue(queue);
+        config.setPollers(pollers);
+        config.setMaxMessages(maxMessages);
+        config.setWaitTime(waitTime);
+        config.setVisibilityTimeout(visibilityTimeout);
+        config.setMaxInFlight(maxInFlight);
+        config.setDeleteWindow(deleteWindow);
+        return new SqsConsumer(amazonSQSAsync, notificationServiceImpl::receive, config, registry);
+    }
+
+    // The SNS calls run on their own bounded pool, never on the event loop of Netty. When all threads are busy and the
+    // queue is full, a call is rejected at once (503) instead of piling up.
+    @Bean(destroyMethod = "shutdown")
+    public AmazonSNSAsync amazonSNSAsync(@Value("${notification.sns.threads:16}") int threads,
+                                         @Value("${notification.sns.queue-capacity:1000}") int queueCapacity) {
+        AmazonSNSAsyncClientBuilder builder = AmazonSNSAsyncClientBuilder
+                .standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey,secretKey)))
+                .withExecutorFactory(() -> new ThreadPoolExecutor(
+                        threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        new CustomizableThreadFactory("sns-"),
+                        new ThreadPoolExecutor.AbortPolicy()));
+        if (snsEndpoint.isBlank()){
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(snsEndpoint, region));
+        }
+        return builder.build();
     }
 
     @Bean
-    public QueueMessagingTemplate queueMessagingTemplate(){
-        return new QueueMessagingTemplate(amazonSQSAsync());
+    public QueueMessagingTemplate queueMessagingTemplate(AmazonSQSAsync amazonSQSAsync){
+        return new QueueMessagingTemplate(amazonSQSAsync);
     }
 }
@@ -0,0 +1,395 @@
+package com.salenaluu.portfolio.notification.receiver;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Receives the messages of one SQS queue with several long polling pollers, up to 10 messages per call.
+// - At most maxInFlight messages are processed at the same time. A poller only asks for as many messages as there are
+//   free places, with none left it waits (the messages stay in SQS meanwhile).
+// - A processed message is deleted with DeleteMessageBatch, as soon as 10 are done or at the end of the delete window.
+//   A failed message isn't deleted, SQS delivers it again after its visibility timeout.
+// - A message, which is still processed, when half of its visibility timeout is over, gets a new visibility timeout,
+//   so a slow handler doesn't get the same message a second time.
+@Slf4j
+public class SqsConsumer implements SmartLifecycle {
+    // the limit of SQS for ReceiveMessage, DeleteMessageBatch and ChangeMessageVisibilityBatch
+    public static final int MAX_BATCH_SIZE = 10;
+
+    private final AmazonSQSAsync sqsClient;
+    private final Function<String, Mono<Void>> handler;
+    private final Config config;
+
+    private final Semaphore permits;
+    // by receipt handle
+    private final Map<String, InFlightMessage> inFlight = new ConcurrentHashMap<>();
+    private final Queue<String> processed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private final AtomicBoolean deleteRequested = new AtomicBoolean();
+    // the DeleteMessageBatch calls, SQS hasn't answered yet
+    private final Set<CompletableFuture<Void>> deletesInFlight = ConcurrentHashMap.newKeySet();
+
+    private final DistributionSummary receivedBatchSizes;
+    private final Timer processingTime;
+    private final Counter processedMessages;
+    private final Counter failedMessages;
+    private final Counter deleted;
+    private final Counter deleteFailed;
+    private final Counter visibilityExtended;
+    private final Counter receiveFailed;
+
+    private volatile boolean running;
+    private volatile String queueUrl;
+    private ExecutorService pollers;
+    // the deletes and the visibility extensions
+    private ScheduledExecutorService batches;
+
+    public SqsConsumer(AmazonSQSAsync sqsClient, Function<String, Mono<Void>> handler, Config config, MeterRegistry registry) {
+        if (config.getMaxMessages() < 1 || config.getMaxMessages() > MAX_BATCH_SIZE){
+            throw new IllegalArgumentException("maxMessages must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (config.getWaitTime().toSeconds() > 20){
+            throw new IllegalArgumentException("SQS waits at most 20s for messages");
+        }
+        if (config.getVisibilityTimeout().toSeconds() < 2){
+            throw new IllegalArgumentException("The visibility timeout must be at least 2s to be extended in time");
+        }
+        this.sqsClient = sqsClient;
+        this.handler = handler;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxInFlight());
+
+        String queue = config.getQueue();
+        Gauge.builder("notification.receiver.in-flight", inFlight, Map::size)
+                .description("Messages, which are processed right now")
+                .tag("queue", queue)
+                .register(registry);
+        this.receivedBatchSizes = DistributionSummary.builder("notification.receiver.receive.batch.size")
+                .description("Messages per ReceiveMessage call")
+                .tag("queue", queue)
+                .register(registry);
+        this.processingTime = Timer.builder("notification.receiver.processing")
+                .description("Time from the receipt of a message to the end of its processing")
+                .tag("queue", queue)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.processedMessages = messages(registry, queue, "processed");
+        this.failedMessages = messages(registry, queue, "failed");
+        this.deleted = deletes(registry, queue, "deleted");
+        this.deleteFailed = deletes(registry, queue, "failed");
+        this.visibilityExtended = Counter.builder("notification.receiver.visibility.extensions")
+                .description("Messages, which got a new visibility timeout")
+                .tag("queue", queue)
+                .register(registry);
+        this.receiveFailed = Counter.builder("notification.receiver.receive.errors")
+                .description("Failed ReceiveMessage calls")
+                .tag("queue", queue)
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        queueUrl = sqsClient.getQueueUrl(config.getQueue()).getQueueUrl();
+        running = true;
+
+        batches = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sqs-batch-"));
+        long deleteWindow = config.getDeleteWindow().toNanos();
+        batches.scheduleWithFixedDelay(() -> deleteProcessed(true), deleteWindow, deleteWindow, TimeUnit.NANOSECONDS);
+        long extensionInterval = config.getVisibilityTimeout().toNanos() / 4;
+        batches.scheduleWithFixedDelay(this::extendVisibility, extensionInterval, extensionInterval, TimeUnit.NANOSECONDS);
+
+        pollers = Executors.newFixedThreadPool(config.getPollers(), new CustomizableThreadFactory("sqs-poller-"));
+        for (int i = 0; i < config.getPollers(); i++) {
+            pollers.execute(this::poll);
+        }
+        log.info("Receiving from {} with {} pollers", config.getQueue(), config.getPollers());
+    }
+
+    // Each poller has its own thread and blocks in the long poll, the processing runs elsewhere
+    private void poll() {
+        while (running) {
+            int reserved = 0;
+            try {
+                permits.acquire();
+                reserved = 1;
+                while (reserved < config.getMaxMessages() && permits.tryAcquire()) {
+                    reserved++;
+                }
+                List<Message> messages = sqsClient.receiveMessage(new ReceiveMessageRequest(queueUrl)
+                                .withMaxNumberOfMessages(reserved)
+                                .withWaitTimeSeconds((int) config.getWaitTime().toSeconds())
+                                .withVisibilityTimeout((int) config.getVisibilityTimeout().toSeconds()))
+                        .getMessages();
+                receivedBatchSizes.record(messages.size());
+                permits.release(reserved - messages.size());
+                reserved = 0;
+                messages.forEach(this::process);
+            } catch (InterruptedException | AbortedException e) {
+                permits.release(reserved);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                permits.release(reserved);
+                receiveFailed.increment();
+                log.warn("Receiving from {} failed: {}", config.getQueue(), e.toString());
+                if (!pause(config.getWaitTime())){
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(Message message) {
+        String receiptHandle = message.getReceiptHandle();
+        long received = System.nanoTime();
+        inFlight.put(receiptHandle, new InFlightMessage(receiptHandle, received + config.getVisibilityTimeout().toNanos()));
+        Mono.defer(() -> handler.apply(message.getBody()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> {
+                    inFlight.remove(receiptHandle);
+                    permits.release();
+                    processingTime.record(System.nanoTime() - received, TimeUnit.NANOSECONDS);
+                })
+                .subscribe(
+                        null,
+                        error -> {
+                            failedMessages.increment();
+                            log.warn("Processing message {} failed: {}", message.getMessageId(), error.toString());
+                        },
+                        () -> {
+                            processedMessages.increment();
+                            processed.offer(receiptHandle);
+                            if (processedCount.incrementAndGet() >= MAX_BATCH_SIZE && deleteRequested.compareAndSet(false, true)){
+                                batches.execute(() -> {
+                                    deleteRequested.set(false);
+                                    deleteProcessed(false);
+                                });
+                            }
+                        });
+    }
+
+    // Deletes all full batches and with partial=true also the rest
+    private void deleteProcessed(boolean partial) {
+        try {
+            while (processedCount.get() >= MAX_BATCH_SIZE || (partial && processedCount.get() > 0)) {
+                List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(MAX_BATCH_SIZE);
+                String receiptHandle;
+                while (entries.size() < MAX_BATCH_SIZE && (receiptHandle = processed.poll()) != null) {
+                    processedCount.decrementAndGet();
+                    entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(entries.size()), receiptHandle));
+                }
+                if (entries.isEmpty()){
+                    return;
+                }
+                CompletableFuture<Void> answered = new CompletableFuture<>();
+                deletesInFlight.add(answered);
+                sqsClient.deleteMessageBatchAsync(new DeleteMessageBatchRequest(queueUrl, entries),
+                        new AsyncHandler<DeleteMessageBatchRequest, DeleteMessageBatchResult>() {
+                            @Override
+                            public void onError(Exception exception) {
+                                deleteFailed.increment(entries.size());
+                                log.warn("Deleting {} messages failed, they are delivered again: {}",
+                                        entries.size(), exception.toString());
+                                answered(answered);
+                            }
+
+                            @Override
+                            public void onSuccess(DeleteMessageBatchRequest request, DeleteMessageBatchResult result) {
+                                deleted.increment(result.getSuccessful().size());
+                                failed(result.getFailed(), deleteFailed, "Deleting");
+                                answered(answered);
+                            }
+                        });
+            }
+        } catch (RuntimeException e) {
+            // the scheduled delete must survive for the next window
+            log.error("Deleting processed messages failed", e);
+        }
+    }
+
+    private void answered(CompletableFuture<Void> delete) {
+        deletesInFlight.remove(delete);
+        delete.complete(null);
+    }
+
+    private void extendVisibility() {
+        try {
+            long now = System.nanoTime();
+            long visibilityTimeout = config.getVisibilityTimeout().toNanos();
+            List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(MAX_BATCH_SIZE);
+            for (InFlightMessage message : inFlight.values()) {
+                if (message.visibleAt - now > visibilityTimeout / 2){
+                    continue;
+                }
+                message.visibleAt = now + visibilityTimeout;
+                entries.add(new ChangeMessageVisibilityBatchRequestEntry(String.valueOf(entries.size()), message.receiptHandle)
+                        .withVisibilityTimeout((int) config.getVisibilityTimeout().toSeconds()));
+                if (entries.size() == MAX_BATCH_SIZE){
+                    changeVisibility(entries);
+                    entries = new ArrayList<>(MAX_BATCH_SIZE);
+                }
+            }
+            if (!entries.isEmpty()){
+                changeVisibility(entries);
+            }
+        } catch (RuntimeException e) {
+            log.error("Extending the visibility of messages failed", e);
+        }
+    }
+
+    private void changeVisibility(List<ChangeMessageVisibilityBatchRequestEntry> entries) {
+        sqsClient.changeMessageVisibilityBatchAsync(new ChangeMessageVisibilityBatchRequest(queueUrl, entries),
+                new AsyncHandler<ChangeMessageVisibilityBatchRequest, ChangeMessageVisibilityBatchResult>() {
+                    @Override
+                    public void onError(Exception exception) {
+                        log.warn("Extending the visibility of {} messages failed: {}", entries.size(), exception.toString());
+                    }
+
+                    @Override
+                    public void onSuccess(ChangeMessageVisibilityBatchRequest request, ChangeMessageVisibilityBatchResult result) {
+                        visibilityExtended.increment(result.getSuccessful().size());
+                        // e.g. the message was processed and deleted in the meantime
+                        failed(result.getFailed(), null, "Extending the visibility of");
+                    }
+                });
+    }
+
+    private static void failed(List<BatchResultErrorEntry> entries, Counter counter, String action) {
+        if (entries.isEmpty()){
+            return;
+        }
+        if (counter != null){
+            counter.increment(entries.size());
+        }
+        log.warn("{} {} messages failed: {}", action, entries.size(), entries.get(0).getCode());
+    }
+
+    // The pollers stop after their current long poll, the messages in flight are processed and deleted, before the SQS
+    // client shuts down
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            pollers.shutdownNow();
+            pollers.awaitTermination(config.getWaitTime().toSeconds() + 1, TimeUnit.SECONDS);
+            if (permits.tryAcquire(config.getMaxInFlight(), config.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)){
+                permits.release(config.getMaxInFlight());
+            } else {
+                log.warn("{} messages are still processed, they are delivered again", inFlight.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batches.shutdown();
+        try {
+            // a scheduled delete may still be running
+            batches.awaitTermination(config.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            deleteProcessed(true);
+            CompletableFuture.allOf(deletesInFlight.toArray(CompletableFuture[]::new))
+                    .get(config.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("{} DeleteMessageBatch calls weren't answered, their messages may be delivered again", deletesInFlight.size());
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static boolean pause(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Counter messages(MeterRegistry registry, String queue, String result) {
+        return Counter.builder("notification.receiver.messages")
+                .description("Received messages by the result of their processing")
+                .tag("queue", queue)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter deletes(MeterRegistry registry, String queue, String result) {
+        return Counter.builder("notification.receiver.deletes")
+                .description("Processed messages by the result of their delete")
+                .tag("queue", queue)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static final class InFlightMessage {
+        private final String receiptHandle;
+        // nanoTime, when SQS would deliver the message again
+        private volatile long visibleAt;
+
+        private InFlightMessage(String receiptHandle, long visibleAt) {
+            this.receiptHandle = receiptHandle;
+            this.visibleAt = visibleAt;
+        }
+    }
+
+    @Data
+    public static class Config {
+        private String queue = "Receiver";
+        private int pollers = 4;
+        // per ReceiveMessage call, at most 10
+        private int maxMessages = MAX_BATCH_SIZE;
+        // long polling, at most 20s
+        private Duration waitTime = Duration.ofSeconds(20);
+        private Duration visibilityTimeout = Duration.ofSeconds(30);
+        private int maxInFlight = 100;
+        private Duration deleteWindow = Duration.ofMillis(100);
+        // how long stop() waits for the messages in flight and again for their deletes
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+}
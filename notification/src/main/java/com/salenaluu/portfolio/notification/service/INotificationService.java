@@ -0,0 +1,11 @@
+package com.salenaluu.portfolio.notification.service;
+
+import reactor.core.publisher.Mono;
+
+public interface INotificationService {
+    /* ===== SENDER ===== */
+    Mono<String> subscribe(String email);
+    Mono<String> publish(String message);
+    /* ===== RECEIVER ===== */
+    Mono<Void> receive(String message);
+}
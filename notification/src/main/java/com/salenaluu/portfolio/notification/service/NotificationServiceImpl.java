@@ -0,0 +1,97 @@
+package com.salenaluu.portfolio.notification.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.model.SubscribeRequest;
+import com.amazonaws.services.sns.model.SubscribeResult;
+import com.salenaluu.portfolio.notification.utils.exceptions.BadGatewayException;
+import com.salenaluu.portfolio.notification.utils.exceptions.BadRequestException;
+import com.salenaluu.portfolio.notification.utils.exceptions.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static com.salenaluu.portfolio.notification.utils.enums.ExceptionResponse.*;
+import static java.lang.String.valueOf;
+
+@Slf4j
+@Service
+public class NotificationServiceImpl implements INotificationService {
+    private static final Set<String> INVALID_REQUEST = Set.of("InvalidParameter", "InvalidParameterValue");
+    private static final Set<String> THROTTLED = Set.of("Throttling", "ThrottledException", "KMSThrottling");
+
+    private final AmazonSNSAsync snsClient;
+    private final PublishPipeline publishPipeline;
+    private final String topicArn;
+
+    public NotificationServiceImpl(AmazonSNSAsync snsClient,
+                                   PublishPipeline publishPipeline,
+                                   @Value("${cloud.aws.sns.topic.interviewStatus.arn}") String topicArn) {
+        this.snsClient = snsClient;
+        this.publishPipeline = publishPipeline;
+        this.topicArn = topicArn;
+    }
+
+    @Override
+    public Mono<String> subscribe(String email) {
+        return call((AsyncHandler<SubscribeRequest, SubscribeResult> handler) -> snsClient
+                .subscribeAsync(new SubscribeRequest(topicArn, "email", email), handler))
+                .map(SubscribeResult::getSubscriptionArn);
+    }
+
+    // goes out with the next batch
+    @Override
+    public Mono<String> publish(String message) {
+        return publishPipeline.publish(message);
+    }
+
+    // a message of the Receiver queue, it is deleted after the Mono completes
+    @Override
+    public Mono<Void> receive(String message) {
+        return Mono.fromRunnable(() -> log.info("Message received {}", message));
+    }
+
+    // The call starts on subscribe and runs on the pool of the SNS client, its result completes the Mono there.
+    // So the event loop only hands the request over, it never waits for AWS.
+    static <REQ extends AmazonWebServiceRequest, RES> Mono<RES> call(Function<AsyncHandler<REQ, RES>, Future<RES>> call) {
+        return Mono.<RES>create(sink -> {
+                    Future<RES> response = call.apply(new AsyncHandler<>() {
+                        @Override
+                        public void onError(Exception exception) {
+                            sink.error(exception);
+                        }
+
+                        @Override
+                        public void onSuccess(REQ request, RES result) {
+                            sink.success(result);
+                        }
+                    });
+                    sink.onCancel(() -> response.cancel(false));
+                })
+                .onErrorMap(NotificationServiceImpl::mapError);
+    }
+
+    static Throwable mapError(Throwable error) {
+        if (error instanceof RejectedExecutionException){
+            return new ServiceUnavailableException(valueOf(SNS_BUSY));
+        }
+        if (error instanceof AmazonServiceException exception){
+            if (THROTTLED.contains(exception.getErrorCode()) || exception.getStatusCode() == 429){
+                return new ServiceUnavailableException(valueOf(SNS_BUSY));
+            }
+            if (INVALID_REQUEST.contains(exception.getErrorCode())){
+                return new BadRequestException(valueOf(SNS_REQUEST_INVALID));
+            }
+        }
+        log.warn("SNS request failed: {}", error.toString());
+        return new BadGatewayException(valueOf(SNS_REQUEST_FAILED));
+    }
+}
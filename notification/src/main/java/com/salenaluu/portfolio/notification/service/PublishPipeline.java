@@ -0,0 +1,230 @@
+package com.salenaluu.portfolio.notification.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.model.BatchResultErrorEntry;
+import com.amazonaws.services.sns.model.PublishBatchRequest;
+import com.amazonaws.services.sns.model.PublishBatchRequestEntry;
+import com.amazonaws.services.sns.model.PublishBatchResult;
+import com.amazonaws.services.sns.model.PublishBatchResultEntry;
+import com.salenaluu.portfolio.notification.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.salenaluu.portfolio.notification.utils.enums.ExceptionResponse.PUBLISH_QUEUE_FULL;
+import static com.salenaluu.portfolio.notification.utils.enums.ExceptionResponse.PUBLISH_SHUTTING_DOWN;
+import static java.lang.String.valueOf;
+
+// Collects the messages to publish in a bounded queue and sends them with PublishBatch to SNS: as soon as a batch is
+// full, otherwise at the end of each window. A burst of publish requests costs one AWS call per batch (at most 10).
+// When the queue is full, a message is rejected at once with 503, the caller can retry it later. So is every message
+// after the shutdown started: destroy() sends the rest of the queue and waits (bounded) for SNS to answer.
+//
+// The Mono of a message completes with its MessageId, when SNS accepted it, or with the error of its entry.
+@Slf4j
+@Component
+public class PublishPipeline implements DisposableBean {
+    // the limit of SNS for PublishBatch
+    public static final int MAX_BATCH_SIZE = 10;
+    private static final String SUBJECT = "****A new Blogpost was published****";
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final AmazonSNSAsync snsClient;
+    private final String topicArn;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    // lock-free, publish() runs on the event loop
+    private final Queue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+    // places taken in the queue, a message takes its place before it is offered
+    private final AtomicInteger reserved = new AtomicInteger();
+    // messages in the queue, counted after they are offered, so a flush always finds as many as it sees here
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    // the PublishBatch calls, SNS hasn't answered yet
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    // all flushes run on this thread, one after another
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sns-batch-"));
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushLatency;
+    private final Counter rejected;
+
+    public PublishPipeline(AmazonSNSAsync snsClient,
+                           MeterRegistry registry,
+                           @Value("${cloud.aws.sns.topic.interviewStatus.arn}") String topicArn,
+                           @Value("${notification.sns.batch.size:10}") int batchSize,
+                           @Value("${notification.sns.batch.window:50ms}") Duration window,
+                           @Value("${notification.sns.batch.queue-capacity:10000}") int queueCapacity) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE){
+            throw new IllegalArgumentException("notification.sns.batch.size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.snsClient = snsClient;
+        this.topicArn = topicArn;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+
+        Gauge.builder("notification.publish.queue.depth", queueDepth, AtomicInteger::get)
+                .description("Messages waiting for their batch")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("notification.publish.batch.size")
+                .description("Messages per PublishBatch call")
+                .register(registry);
+        this.flushLatency = Timer.builder("notification.publish.flush.latency")
+                .description("Latency of the PublishBatch calls")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejected = Counter.builder("notification.publish.rejected")
+                .description("Messages rejected, because the queue was full")
+                .register(registry);
+
+        flusher.scheduleWithFixedDelay(() -> flush(true), window.toNanos(), window.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public Mono<String> publish(String message) {
+        return Mono.create(sink -> {
+            if (shuttingDown.get()){
+                sink.error(new ServiceUnavailableException(valueOf(PUBLISH_SHUTTING_DOWN)));
+                return;
+            }
+            if (reserved.incrementAndGet() > queueCapacity){
+                reserved.decrementAndGet();
+                rejected.increment();
+                sink.error(new ServiceUnavailableException(valueOf(PUBLISH_QUEUE_FULL)));
+                return;
+            }
+            PendingMessage pending = new PendingMessage(message, sink);
+            queue.offer(pending);
+            // a full batch doesn't wait for the end of the window
+            if (queueDepth.incrementAndGet() >= batchSize && flushRequested.compareAndSet(false, true)){
+                try {
+                    flusher.execute(() -> {
+                        flushRequested.set(false);
+                        flush(false);
+                    });
+                } catch (RejectedExecutionException e) {
+                    // shutting down, the last flush of destroy() sends the batch
+                }
+            }
+            // destroy() may have emptied the queue for the last time already, then nobody would send the message
+            if (shuttingDown.get() && queue.remove(pending)){
+                queueDepth.decrementAndGet();
+                reserved.decrementAndGet();
+                sink.error(new ServiceUnavailableException(valueOf(PUBLISH_SHUTTING_DOWN)));
+            }
+        });
+    }
+
+    // Sends all full batches and with partial=true also the rest
+    private void flush(boolean partial) {
+        try {
+            while (queueDepth.get() >= batchSize || (partial && queueDepth.get() > 0)) {
+                List<PendingMessage> batch = new ArrayList<>(batchSize);
+                PendingMessage pending;
+                while (batch.size() < batchSize && (pending = queue.poll()) != null) {
+                    queueDepth.decrementAndGet();
+                    reserved.decrementAndGet();
+                    batch.add(pending);
+                }
+                if (batch.isEmpty()){
+                    return;
+                }
+                send(batch);
+            }
+        } catch (RuntimeException e) {
+            // the scheduled flush must survive for the next window
+            log.error("Flushing the publish queue failed", e);
+        }
+    }
+
+    private void send(List<PendingMessage> batch) {
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(new PublishBatchRequestEntry()
+                    .withId(String.valueOf(i))
+                    .withMessage(batch.get(i).message())
+                    .withSubject(SUBJECT));
+        }
+        batchSizes.record(batch.size());
+        long started = System.nanoTime();
+        CompletableFuture<Void> answered = new CompletableFuture<>();
+        inFlight.add(answered);
+        NotificationServiceImpl
+                .call((AsyncHandler<PublishBatchRequest, PublishBatchResult> handler) -> snsClient
+                        .publishBatchAsync(new PublishBatchRequest()
+                                .withTopicArn(topicArn)
+                                .withPublishBatchRequestEntries(entries), handler))
+                // runs after the messages got their result
+                .doFinally(signal -> {
+                    flushLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    inFlight.remove(answered);
+                    answered.complete(null);
+                })
+                .subscribe(
+                        result -> complete(batch, result),
+                        // the whole call failed (rejected, throttled, unreachable), so did every message
+                        error -> batch.forEach(pending -> pending.sink().error(error)));
+    }
+
+    private static void complete(List<PendingMessage> batch, PublishBatchResult result) {
+        for (PublishBatchResultEntry entry : result.getSuccessful()) {
+            batch.get(Integer.parseInt(entry.getId())).sink().success(entry.getMessageId());
+        }
+        for (BatchResultErrorEntry entry : result.getFailed()) {
+            AmazonServiceException error = new AmazonServiceException(entry.getMessage());
+            error.setErrorCode(entry.getCode());
+            error.setStatusCode(Boolean.TRUE.equals(entry.getSenderFault()) ? 400 : 500);
+            batch.get(Integer.parseInt(entry.getId())).sink().error(NotificationServiceImpl.mapError(error));
+        }
+    }
+
+    // The messages still in the queue are sent and answered before the SNS client shuts down
+    @Override
+    public void destroy() throws InterruptedException {
+        shuttingDown.set(true);
+        long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+        flusher.shutdown();
+        flusher.awaitTermination(SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+        flush(true);
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("{} PublishBatch calls weren't answered within {}", inFlight.size(), SHUTDOWN_TIMEOUT);
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+    }
+
+    private record PendingMessage(String message, MonoSink<String> sink) {}
+}
@@ -0,0 +1,9 @@
+package com.salenaluu.portfolio.notification.utils.enums;
+
+public enum ExceptionResponse {
+    SNS_BUSY,
+    SNS_REQUEST_INVALID,
+    SNS_REQUEST_FAILED,
+    PUBLISH_QUEUE_FULL,
+    PUBLISH_SHUTTING_DOWN
+}
@@ -0,0 +1,241 @@
+package com.salenaluu.portfolio.notification.receiver;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.salenaluu.portfolio.notification.config.NotificationConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Our stand-in for SQS with one queue: long polling, visibility timeouts, batched deletes and visibility changes.
+// Every call takes the given latency, like the round trip to AWS.
+class LocalSqs implements AutoCloseable {
+    static final String QUEUE = "Receiver";
+    private static final String NAMESPACE = "http://queue.amazonaws.com/doc/2012-11-05/";
+
+    final AtomicInteger receiveCalls = new AtomicInteger();
+    final AtomicInteger deleteCalls = new AtomicInteger();
+    final AtomicInteger deleted = new AtomicInteger();
+    // messages, which were delivered again after their visibility timeout
+    final AtomicInteger redelivered = new AtomicInteger();
+
+    private final HttpServer server;
+    private final Duration latency;
+    private final Deque<StoredMessage> visible = new ArrayDeque<>();
+    // by receipt handle
+    private final Map<String, StoredMessage> invisible = new HashMap<>();
+    private int sent;
+
+    LocalSqs(Duration latency) {
+        this.latency = latency;
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    // the client, as NotificationConfig builds it, but against the stand-in
+    AmazonSQSAsync client(int pollers) {
+        NotificationConfig config = new NotificationConfig();
+        ReflectionTestUtils.setField(config, "accessKey", "test");
+        ReflectionTestUtils.setField(config, "secretKey", "test");
+        ReflectionTestUtils.setField(config, "region", "eu-central-1");
+        ReflectionTestUtils.setField(config, "sqsEndpoint", endpoint());
+        return config.amazonSQSAsync(pollers);
+    }
+
+    synchronized void send(String... bodies) {
+        for (String body : bodies) {
+            visible.add(new StoredMessage("message-" + (++sent), body));
+        }
+        notifyAll();
+    }
+
+    private String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> form = formOf(exchange);
+        sleep(latency);
+        String action = form.getOrDefault("Action", "");
+        switch (action) {
+            case "GetQueueUrl" -> respond(exchange, action, "<QueueUrl>" + endpoint() + "/000000000000/" + QUEUE + "</QueueUrl>");
+            case "ReceiveMessage" -> {
+                receiveCalls.incrementAndGet();
+                StringBuilder messages = new StringBuilder();
+                for (StoredMessage message : receive(
+                        Integer.parseInt(form.getOrDefault("MaxNumberOfMessages", "1")),
+                        Duration.ofSeconds(Long.parseLong(form.getOrDefault("WaitTimeSeconds", "0"))),
+                        Duration.ofSeconds(Long.parseLong(form.getOrDefault("VisibilityTimeout", "30"))))) {
+                    String body = HtmlUtils.htmlEscape(message.body);
+                    messages.append("<Message><MessageId>").append(message.id).append("</MessageId>")
+                            .append("<ReceiptHandle>").append(message.receiptHandle).append("</ReceiptHandle>")
+                            .append("<MD5OfBody>")
+                            .append(DigestUtils.md5DigestAsHex(message.body.getBytes(StandardCharsets.UTF_8)))
+                            .append("</MD5OfBody><Body>").append(body).append("</Body></Message>");
+                }
+                respond(exchange, action, messages.toString());
+            }
+            case "DeleteMessageBatch" -> {
+                deleteCalls.incrementAndGet();
+                respond(exchange, action, batch(form, "DeleteMessageBatchRequestEntry", "DeleteMessageBatchResultEntry",
+                        (receiptHandle, entry) -> delete(receiptHandle)));
+            }
+            case "ChangeMessageVisibilityBatch" -> respond(exchange, action, batch(form,
+                    "ChangeMessageVisibilityBatchRequestEntry", "ChangeMessageVisibilityBatchResultEntry",
+                    (receiptHandle, entry) -> changeVisibility(receiptHandle,
+                            Duration.ofSeconds(Long.parseLong(form.get(entry + ".VisibilityTimeout"))))));
+            default -> {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+            }
+        }
+    }
+
+    private synchronized List<StoredMessage> receive(int maxMessages, Duration waitTime, Duration visibilityTimeout) {
+        long deadline = System.nanoTime() + waitTime.toNanos();
+        makeVisibleAgain();
+        while (visible.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                // wakes up for send() and at least every 10ms for the expired visibility timeouts
+                wait(Math.max(1, Math.min(10, (deadline - System.nanoTime()) / 1_000_000)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            makeVisibleAgain();
+        }
+        List<StoredMessage> received = new ArrayList<>();
+        while (received.size() < maxMessages && !visible.isEmpty()) {
+            StoredMessage message = visible.poll();
+            message.receives++;
+            message.receiptHandle = message.id + "-" + message.receives;
+            message.visibleAt = System.nanoTime() + visibilityTimeout.toNanos();
+            invisible.put(message.receiptHandle, message);
+            received.add(message);
+        }
+        return received;
+    }
+
+    private void makeVisibleAgain() {
+        long now = System.nanoTime();
+        Iterator<StoredMessage> messages = invisible.values().iterator();
+        while (messages.hasNext()) {
+            StoredMessage message = messages.next();
+            if (message.visibleAt <= now){
+                messages.remove();
+                visible.add(message);
+                redelivered.incrementAndGet();
+            }
+        }
+    }
+
+    private synchronized boolean delete(String receiptHandle) {
+        if (invisible.remove(receiptHandle) == null){
+            return false;
+        }
+        deleted.incrementAndGet();
+        return true;
+    }
+
+    private synchronized boolean changeVisibility(String receiptHandle, Duration visibilityTimeout) {
+        StoredMessage message = invisible.get(receiptHandle);
+        if (message == null){
+            return false;
+        }
+        message.visibleAt = System.nanoTime() + visibilityTimeout.toNanos();
+        return true;
+    }
+
+    private static String batch(Map<String, String> form, String requestEntry, String resultEntry,
+                                BatchEntry action) {
+        StringBuilder result = new StringBuilder();
+        for (int member = 1; form.containsKey(requestEntry + "." + member + ".Id"); member++) {
+            String entry = requestEntry + "." + member;
+            String id = form.get(entry + ".Id");
+            if (action.apply(form.get(entry + ".ReceiptHandle"), entry)){
+                result.append("<").append(resultEntry).append("><Id>").append(id).append("</Id></").append(resultEntry).append(">");
+            } else {
+                result.append("<BatchResultErrorEntry><Id>").append(id).append("</Id><Code>ReceiptHandleIsInvalid</Code>")
+                        .append("<Message>The receipt handle isn't valid</Message><SenderFault>true</SenderFault></BatchResultErrorEntry>");
+            }
+        }
+        return result.toString();
+    }
+
+    private static Map<String, String> formOf(HttpExchange exchange) throws IOException {
+        Map<String, String> form = new HashMap<>();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        for (String parameter : body.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0){
+                form.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void respond(HttpExchange exchange, String action, String result) throws IOException {
+        byte[] bytes = ("<" + action + "Response xmlns=\"" + NAMESPACE + "\"><" + action + "Result>" + result
+                + "</" + action + "Result><ResponseMetadata><RequestId>request</RequestId></ResponseMetadata></"
+                + action + "Response>").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private interface BatchEntry {
+        boolean apply(String receiptHandle, String entry);
+    }
+
+    private static final class StoredMessage {
+        private final String id;
+        private final String body;
+        private int receives;
+        private String receiptHandle;
+        private long visibleAt;
+
+        private StoredMessage(String id, String body) {
+            this.id = id;
+            this.body = body;
+        }
+    }
+}
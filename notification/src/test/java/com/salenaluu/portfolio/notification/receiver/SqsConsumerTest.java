@@ -0,0 +1,167 @@
+package com.salenaluu.portfolio.notification.receiver;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static com.salenaluu.portfolio.notification.receiver.LocalSqs.QUEUE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A backlog in the Receiver queue, each call to the stand-in takes 5ms like a round trip to AWS
+@Slf4j
+class SqsConsumerTest {
+
+    LocalSqs sqs = new LocalSqs(Duration.ofMillis(5));
+    AmazonSQSAsync sqsClient = sqs.client(16);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    List<SqsConsumer> consumers = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        consumers.forEach(SqsConsumer::stop);
+        sqsClient.shutdown();
+        sqs.close();
+    }
+
+    @Test
+    @DisplayName("should drain a backlog much faster than one message at a time")
+    void should_drain_backlog_faster_than_one_message_at_a_time() {
+        // like the @SqsListener before: one poller, one message per call
+        SqsConsumer.Config oneAtATime = config(1, 1, 1);
+        double oneAtATimeThroughput = drain(oneAtATime, 300);
+
+        SqsConsumer.Config batched = config(8, 10, 200);
+        double batchedThroughput = drain(batched, 5000);
+
+        log.info("one at a time: {} messages/s, 8 pollers with batches of 10: {} messages/s",
+                Math.round(oneAtATimeThroughput), Math.round(batchedThroughput));
+        assertThat(batchedThroughput).isGreaterThan(10 * oneAtATimeThroughput);
+        assertThat(sqs.redelivered).hasValue(0);
+        // batched deletes: 5000 messages with far less than 5000 calls
+        assertThat(sqs.deleteCalls.get()).isLessThan(300 + 5000 / 5);
+    }
+
+    @Test
+    @DisplayName("should never process more messages at once than allowed")
+    void should_bound_messages_in_flight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        start(config(4, 10, 5), message -> Mono.delay(Duration.ofMillis(20))
+                .doOnSubscribe(subscription -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .then());
+        sqs.send(bodies(100));
+
+        await(() -> sqs.deleted.get() == 100, Duration.ofSeconds(20));
+        assertThat(maxInFlight.get()).isBetween(2, 5);
+        assertThat(registry.get("notification.receiver.messages").tag("result", "processed").counter().count())
+                .isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("should extend the visibility of a message, which is processed longer than its visibility timeout")
+    void should_extend_visibility_of_slow_messages() {
+        SqsConsumer.Config config = config(1, 10, 10);
+        config.setVisibilityTimeout(Duration.ofSeconds(2));
+        AtomicInteger processed = new AtomicInteger();
+        start(config, message -> Mono.delay(Duration.ofMillis(3500))
+                .doOnNext(tick -> processed.incrementAndGet())
+                .then());
+        sqs.send("A slow message");
+
+        await(() -> sqs.deleted.get() == 1, Duration.ofSeconds(10));
+        assertThat(processed).hasValue(1);
+        assertThat(sqs.redelivered).hasValue(0);
+        assertThat(registry.get("notification.receiver.visibility.extensions").counter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should not delete a message, which failed")
+    void should_keep_failed_messages() {
+        start(config(2, 10, 10), message -> "poison".equals(message)
+                ? Mono.error(new IllegalStateException("can't process " + message))
+                : Mono.empty());
+        sqs.send("poison", "A new Blogpost");
+
+        await(() -> registry.get("notification.receiver.messages").tag("result", "failed").counter().count() == 1
+                && sqs.deleted.get() == 1, Duration.ofSeconds(10));
+        assertThat(sqs.deleted).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should delete the processed messages, before stop returns")
+    void should_delete_processed_messages_on_stop() {
+        SqsConsumer.Config config = config(2, 10, 10);
+        // no full batch and no end of the window, only stop deletes the messages
+        config.setDeleteWindow(Duration.ofMinutes(1));
+        start(config, message -> Mono.empty());
+        sqs.send(bodies(5));
+        await(() -> registry.get("notification.receiver.messages").tag("result", "processed").counter().count() == 5,
+                Duration.ofSeconds(10));
+
+        consumers.remove(0).stop();
+
+        assertThat(sqs.deleted).hasValue(5);
+        assertThat(registry.get("notification.receiver.deletes").tag("result", "deleted").counter().count()).isEqualTo(5);
+    }
+
+    // messages per second until the backlog is processed and deleted
+    private double drain(SqsConsumer.Config config, int backlog) {
+        int deletedBefore = sqs.deleted.get();
+        sqs.send(bodies(backlog));
+        long started = System.nanoTime();
+        start(config, message -> Mono.empty());
+        await(() -> sqs.deleted.get() - deletedBefore == backlog, Duration.ofSeconds(60));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        consumers.remove(consumers.size() - 1).stop();
+        return backlog / seconds;
+    }
+
+    private void start(SqsConsumer.Config config, Function<String, Mono<Void>> handler) {
+        SqsConsumer consumer = new SqsConsumer(sqsClient, handler, config, registry);
+        consumers.add(consumer);
+        consumer.start();
+    }
+
+    private static SqsConsumer.Config config(int pollers, int maxMessages, int maxInFlight) {
+        SqsConsumer.Config config = new SqsConsumer.Config();
+        config.setQueue(QUEUE);
+        config.setPollers(pollers);
+        config.setMaxMessages(maxMessages);
+        config.setMaxInFlight(maxInFlight);
+        config.setWaitTime(Duration.ofSeconds(1));
+        config.setDeleteWindow(Duration.ofMillis(50));
+        return config;
+    }
+
+    private static String[] bodies(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(message -> "A new Blogpost " + message)
+                .toArray(String[]::new);
+    }
+
+    private static void await(BooleanSupplier condition, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out").isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.salenaluu.portfolio.notification.service;
+
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.salenaluu.portfolio.notification.config.NotificationConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Our stand-in for SNS: answers Subscribe and PublishBatch after the given latency.
+// A message "invalid" fails with InvalidParameter, the other entries of its batch are published.
+class LocalSns implements AutoCloseable {
+    static final String TOPIC_ARN = "arn:aws:sns:eu-central-1:000000000000:interviewStatus";
+    private static final String NAMESPACE = "http://sns.amazonaws.com/doc/2010-03-31/";
+
+    final AtomicInteger published = new AtomicInteger();
+    final AtomicInteger batchCalls = new AtomicInteger();
+    final AtomicInteger subscriptions = new AtomicInteger();
+
+    private final HttpServer server;
+    private final Duration latency;
+
+    LocalSns(Duration latency) {
+        this.latency = latency;
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    // the client, as NotificationConfig builds it, but against the stand-in
+    AmazonSNSAsync client(int threads, int queueCapacity) {
+        NotificationConfig config = new NotificationConfig();
+        ReflectionTestUtils.setField(config, "accessKey", "test");
+        ReflectionTestUtils.setField(config, "secretKey", "test");
+        ReflectionTestUtils.setField(config, "region", "eu-central-1");
+        ReflectionTestUtils.setField(config, "snsEndpoint", "http://localhost:" + server.getAddress().getPort());
+        return config.amazonSNSAsync(threads, queueCapacity);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> form = formOf(exchange);
+        sleep(latency);
+        String action = form.get("Action");
+        if ("Subscribe".equals(action)){
+            subscriptions.incrementAndGet();
+            respond(exchange, "<SubscribeResponse xmlns=\"" + NAMESPACE + "\"><SubscribeResult>"
+                    + "<SubscriptionArn>" + TOPIC_ARN + ":subscription</SubscriptionArn></SubscribeResult>"
+                    + "<ResponseMetadata><RequestId>request</RequestId></ResponseMetadata></SubscribeResponse>");
+        } else if ("PublishBatch".equals(action)){
+            batchCalls.incrementAndGet();
+            StringBuilder successful = new StringBuilder();
+            StringBuilder failed = new StringBuilder();
+            for (int member = 1; form.containsKey(entry(member, "Id")); member++) {
+                String id = form.get(entry(member, "Id"));
+                if ("invalid".equals(form.get(entry(member, "Message")))){
+                    failed.append("<member><Id>").append(id).append("</Id><Code>InvalidParameter</Code>")
+                            .append("<Message>Invalid parameter: Message</Message><SenderFault>true</SenderFault></member>");
+                } else {
+                    successful.append("<member><Id>").append(id).append("</Id><MessageId>message-")
+                            .append(published.incrementAndGet()).append("</MessageId></member>");
+                }
+            }
+            respond(exchange, "<PublishBatchResponse xmlns=\"" + NAMESPACE + "\"><PublishBatchResult>"
+                    + "<Successful>" + successful + "</Successful><Failed>" + failed + "</Failed></PublishBatchResult>"
+                    + "<ResponseMetadata><RequestId>request</RequestId></ResponseMetadata></PublishBatchResponse>");
+        } else {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+        }
+    }
+
+    private static String entry(int member, String field) {
+        return "PublishBatchRequestEntries.member." + member + "." + field;
+    }
+
+    private static Map<String, String> formOf(HttpExchange exchange) throws IOException {
+        Map<String, String> form = new HashMap<>();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        for (String parameter : body.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0){
+                form.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+
+    static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
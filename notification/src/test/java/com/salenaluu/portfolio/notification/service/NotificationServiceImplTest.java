@@ -0,0 +1,113 @@
+package com.salenaluu.portfolio.notification.service;
+
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.salenaluu.portfolio.notification.utils.exceptions.BadRequestException;
+import com.salenaluu.portfolio.notification.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.salenaluu.portfolio.notification.service.LocalSns.TOPIC_ARN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The handlers of WebFlux run on the event loop (a non-blocking thread like those of Schedulers.parallel()).
+// BlockHound throws, as soon as one of these threads blocks.
+class NotificationServiceImplTest {
+
+    LocalSns sns = new LocalSns(Duration.ofMillis(100));
+    AmazonSNSAsync snsClient = sns.client(16, 1000);
+    PublishPipeline publishPipeline = new PublishPipeline(
+            snsClient, new SimpleMeterRegistry(), TOPIC_ARN, 10, Duration.ofMillis(20), 1000);
+    NotificationServiceImpl notificationService = new NotificationServiceImpl(snsClient, publishPipeline, TOPIC_ARN);
+
+    @BeforeAll
+    static void installBlockHound() {
+        BlockHound.install();
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        publishPipeline.destroy();
+        snsClient.shutdown();
+        sns.close();
+    }
+
+    @Test
+    @DisplayName("should notice, when a non-blocking thread blocks")
+    void should_detect_blocking_calls() {
+        StepVerifier
+                .create(Mono.fromRunnable(() -> LocalSns.sleep(Duration.ofMillis(10)))
+                        .subscribeOn(Schedulers.parallel()))
+                .expectError(BlockingOperationError.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("should publish from non-blocking threads without blocking them")
+    void should_publish_without_blocking() {
+        // the first call loads the endpoints and the signer of the SDK from the classpath
+        notificationService.publish("warm up").block(Duration.ofSeconds(10));
+
+        StepVerifier
+                .create(Flux.range(0, 50)
+                        .flatMap(message -> notificationService.publish("A new Blogpost " + message)
+                                .subscribeOn(Schedulers.parallel())))
+                .expectNextCount(50)
+                .verifyComplete();
+        assertThat(sns.published).hasValue(51);
+    }
+
+    @Test
+    @DisplayName("should subscribe an email from a non-blocking thread without blocking it")
+    void should_subscribe_without_blocking() {
+        notificationService.subscribe("warm-up@gmail.com").block(Duration.ofSeconds(10));
+
+        StepVerifier
+                .create(notificationService.subscribe("soul-sisters@gmail.com")
+                        .subscribeOn(Schedulers.parallel()))
+                .expectNext(TOPIC_ARN + ":subscription")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should propagate the error of SNS instead of answering with success")
+    void should_propagate_errors() {
+        StepVerifier
+                .create(notificationService.publish("invalid")
+                        .subscribeOn(Schedulers.parallel()))
+                .expectError(BadRequestException.class)
+                .verify(Duration.ofSeconds(10));
+        assertThat(sns.published).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("should reject calls at once, when the pool of the SNS client is full")
+    void should_reject_when_busy() {
+        AmazonSNSAsync busyClient = sns.client(1, 1);
+        NotificationServiceImpl busyService = new NotificationServiceImpl(busyClient, publishPipeline, TOPIC_ARN);
+
+        // one call runs, one waits in the queue, the third one has no place left
+        List<Throwable> errors = Flux.range(0, 3)
+                .flatMap(email -> busyService.subscribe("reader-" + email + "@gmail.com")
+                        .then(Mono.<Throwable>empty())
+                        .onErrorResume(Mono::just))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        busyClient.shutdown();
+
+        assertThat(errors).hasSize(1)
+                .allMatch(ServiceUnavailableException.class::isInstance);
+        assertThat(sns.subscriptions).hasValue(2);
+    }
+}
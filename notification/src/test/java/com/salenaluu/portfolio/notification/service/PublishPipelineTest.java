@@ -0,0 +1,133 @@
+package com.salenaluu.portfolio.notification.service;
+
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.salenaluu.portfolio.notification.utils.exceptions.BadRequestException;
+import com.salenaluu.portfolio.notification.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.salenaluu.portfolio.notification.service.LocalSns.TOPIC_ARN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A burst of new BlogPosts, each announced with its own call of /publish
+class PublishPipelineTest {
+
+    LocalSns sns = new LocalSns(Duration.ofMillis(50));
+    AmazonSNSAsync snsClient = sns.client(4, 100);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    PublishPipeline publishPipeline = new PublishPipeline(snsClient, registry, TOPIC_ARN, 10, Duration.ofMillis(20), 1000);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        publishPipeline.destroy();
+        snsClient.shutdown();
+        sns.close();
+    }
+
+    @Test
+    @DisplayName("should publish a burst of messages with one call per 10 messages")
+    void should_publish_burst_in_batches() throws InterruptedException {
+        // no window, only full batches are sent
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PublishPipeline burstPipeline = new PublishPipeline(snsClient, registry, TOPIC_ARN, 10, Duration.ofMinutes(1), 1000);
+
+        StepVerifier
+                .create(Flux.range(0, 200)
+                        .flatMap(message -> burstPipeline.publish("A new Blogpost " + message), 200)
+                        .distinct())
+                .expectNextCount(200)
+                .verifyComplete();
+        burstPipeline.destroy();
+
+        assertThat(sns.published).hasValue(200);
+        assertThat(sns.batchCalls).hasValue(20);
+        DistributionSummary batchSizes = registry.get("notification.publish.batch.size").summary();
+        assertThat(batchSizes.count()).isEqualTo(20);
+        assertThat(batchSizes.totalAmount()).isEqualTo(200);
+        assertThat(registry.get("notification.publish.flush.latency").timer().count()).isEqualTo(20);
+        assertThat(registry.get("notification.publish.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("should send a batch, which doesn't get full, at the end of the window")
+    void should_flush_partial_batch_after_window() {
+        StepVerifier
+                .create(publishPipeline.publish("A new Blogpost"))
+                .expectNext("message-1")
+                .verifyComplete();
+
+        assertThat(sns.batchCalls).hasValue(1);
+        assertThat(registry.get("notification.publish.batch.size").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should reject a message with 503, when the queue is full")
+    void should_reject_when_queue_is_full() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PublishPipeline slowPipeline = new PublishPipeline(snsClient, registry, TOPIC_ARN, 10, Duration.ofMinutes(1), 5);
+        List<Mono<String>> messages = Flux.range(0, 6)
+                .map(message -> slowPipeline.publish("A new Blogpost " + message).cache())
+                .collectList()
+                .block();
+        messages.forEach(message -> message.subscribe(messageId -> {}, error -> {}));
+
+        StepVerifier.create(messages.get(5))
+                .expectError(ServiceUnavailableException.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.get("notification.publish.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("notification.publish.queue.depth").gauge().value()).isEqualTo(5);
+        assertThat(sns.batchCalls).hasValue(0);
+
+        // the queued messages are still sent on shutdown
+        slowPipeline.destroy();
+        StepVerifier.create(Flux.concat(messages.subList(0, 5)))
+                .expectNextCount(5)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should send the rest of the queue on shutdown and reject the messages after it with 503")
+    void should_drain_queue_and_reject_after_shutdown() throws InterruptedException {
+        PublishPipeline closingPipeline = new PublishPipeline(snsClient, new SimpleMeterRegistry(), TOPIC_ARN, 10, Duration.ofMinutes(1), 1000);
+        List<String> messageIds = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            closingPipeline.publish("A new Blogpost " + i).subscribe(messageIds::add);
+        }
+
+        closingPipeline.destroy();
+
+        // SNS answered the last batch, before destroy() returned
+        assertThat(messageIds).hasSize(3);
+        StepVerifier.create(closingPipeline.publish("A new Blogpost"))
+                .expectError(ServiceUnavailableException.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(sns.batchCalls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should fail only the rejected entry of a batch")
+    void should_fail_single_entry() {
+        Mono<String> valid = publishPipeline.publish("A new Blogpost").cache();
+        Mono<String> invalid = publishPipeline.publish("invalid").cache();
+        valid.subscribe();
+        invalid.subscribe(messageId -> {}, error -> {});
+
+        StepVerifier.create(valid)
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(invalid)
+                .expectError(BadRequestException.class)
+                .verify(Duration.ofSeconds(5));
+        assertThat(sns.published).hasValue(1);
+    }
+}